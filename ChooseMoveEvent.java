@@ -0,0 +1,42 @@
+/* ChooseMoveEvent.java */
+
+package player;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ *  A Flight Recorder event for each call to MachinePlayer.chooseMove().  Like the
+ *  other engine events it is off unless the recording turns it on, for example with
+ *  the settings in network.jfc.
+ */
+
+@Name("player.ChooseMove")
+@Label("Choose Move")
+@Description("One call to MachinePlayer.chooseMove()")
+@Category("Network Engine")
+@Enabled(false)
+@StackTrace(false)
+class ChooseMoveEvent extends Event {
+
+  @Label("Color")
+  int color;
+
+  @Label("Completed Depth")
+  int depth;
+
+  @Label("Nodes")
+  long nodes;
+
+  @Label("Score")
+  int score;
+
+  @Label("Move")
+  String move;
+
+}
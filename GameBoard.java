@@ -2,873 +2,188 @@
 
 package player;
 
+import java.io.PrintStream;
+import jdk.jfr.FlightRecorder;
+import java.util.Random;
 import player.list.*;
 
 
 public class GameBoard {
 
-    private Chip[][] board;
+    private long[] occupied;
+    private long[] forbidden;
+    private final Chip[] board = new Chip[DIMENSION * DIMENSION];
+    private long hash;
+    private final int[] stackSquares = new int[DIMENSION * DIMENSION];
+    private final int[] stackDirections = new int[DIMENSION * DIMENSION];
+    private final long[] stackCandidates = new long[DIMENSION * DIMENSION];
+    private final long[] parentOccupied = new long[2];
+    private final long[] parentThreats = new long[2];
+    private int parentPlayer = -1;
+    private boolean parentNetwork;
+    private long networkChecks;
+    private int evaluateSamples = SAMPLE_INTERVAL;
+    private int missingChipsSamples = SAMPLE_INTERVAL;
+    private int networkSamples = SAMPLE_INTERVAL;
     private ChipList player1;
     private ChipList player2;
     private static final int DIMENSION = 8;
     static final int MAXIMUM_SCORE = 200;
+    static final int MAXIMUM_MOVES = MachinePlayer.NUM_CHIPS * DIMENSION * DIMENSION;
 
     /**
-     * Gameboard invariants:
-     *  1) Board size will not change.
-     *  2) board[0][0], board[0][7], board[7][0], board[7][7] should always point to null.
-     *       - Methods that alter the location of a chip or place a chip should check for this.
-     *  3) For any Chip c on (i, j) of the Gameboard, c.x() == i and c.y() == j.
-     *  4) White goals should only have white chips and black goals should only have black chips.
-     */
-
-    public GameBoard() {
-        board = new Chip[8][8];
-    }
-
-    ChipList getChipList(int player) {
-        if(player1.player()==player) {
-            return player1;
-        }
-        return player2;
-    }
-
-    /**
-     * By validMoves takes an integer representing the player's color and returns a list of moves
-     * that represent all possible moves for the current gameboard for that player.
-     **/
-
-    MoveList validMoves(int player) {
-        MoveList validList = new MoveList();
-        Move currMove;
-        Chip chip;
-        ChipList chips = getChipList(player);
-        if(chips.getChipsLeft()==0) {
-	        for(int chp=0; chp<MachinePlayer.NUM_CHIPS; chp++) {
-	        	for(int i=0; i<DIMENSION; i++) {
-	            	for(int j=0; j<DIMENSION; j++) {
-	         	     	chip = chips.selectChip(chp);
-	         	     	currMove = new Move(i, j, chip.x(), chip.y());
-	         	     	if(isValidMove(player, currMove)) {
-	         	     		validList.insertBack(currMove);
-	         	     	}
-	            	}
-	        	}	
-	        }
-        }
-        else {
-        	for(int i=0; i<DIMENSION; i++) {
-	            for(int j=0; j<DIMENSION; j++) {
-	              	currMove = new Move(i, j);
-	        	     	if(isValidMove(player, currMove)) {
-	      	     		validList.insertBack(currMove);  
-	           		}
-	       		}
-        	}
-        }
-        return validList;
-    }
-
-    /**
-     * isValidSpace takes in an x and y, representing a space on the board, and an integer representing
-     * the player's color and returns whether it is valid to move a players piece to that space.
-     **/
-
-    boolean isValidMove(int player, Move m) {
-    	Chip chip;
-
-    	if(m.moveKind == Move.ADD) {
-    		if(getChipList(player).getChipsLeft() == 0){
-    			return false;
-    		}
-    	}
-    	if(m.moveKind == Move.STEP) {
-    		if((m.x1 == m.x2 && m.y1 == m.y2) ||
-    		   (getChip(m.x2,m.y2)==null || getChip(m.x2, m.y2).player()!=player)) {
-    			return false;
-    		}
- 			chip = getChip(m.x2, m.y2);
-    		removeChip(m.x2,m.y2);
-    		if(!isValidSpace(m.x1, m.y1, player)) {
-    			placeChip(chip, m.x2, m.y2);
-    			return false;
-    		}
-    		else {
-    			placeChip(chip, m.x2, m.y2);
-    			return true;
-    		}
-    	}
-    	if(!isValidSpace(m.x1, m.y1, player)) {
-    		return false;
-    	}
-
-    	return true;
-    }
-    
-    boolean isValidSpace(int x, int y, int player) {
-        if((x<0 || x>=DIMENSION || y<0 || y>=DIMENSION) || 
-           hasChip(x,y) ||
-           (player==0 && (x==0 || x==7)) ||
-           (player==1 && (y==0 || y==7))
-           ) {
-            return false;
-        }
-        int numberChipsIn3x3=0;
-        for(int i=-1; i<=1; i++) {
-            for(int j=-1; j<=1; j++) {
-                if(x+i<0 || x+i>=DIMENSION || y+j<0 || y+j>=DIMENSION) {
-                	continue;
-                }
-                Chip chip = getChip(x+i,y+j);
-                if(chip != null && chip.player()==player) {
-                    numberChipsIn3x3++;
-                    if(adjacentToChip(player, x+i, y+j)) {
-                 	   return false;
-                	}
-                }
-                if(i==0 && j==0) {
-                	numberChipsIn3x3++;
-                }
-            }
-        }
-        if(numberChipsIn3x3>2){
-            return false;
-        }
-        return true;
-    }
-
-    /**
-     * adjacentToChip takes in an integer reprenting a player's color and returns whether that chip
-     * is next to another of that player's chip.
-     **/
-
-    boolean adjacentToChip(int player, int x, int y) {
-        for(int i=-1; i<=1; i++) {
-            for(int j=-1; j<=1; j++) {
-                if(x+i<0 || x+i>=DIMENSION || y+j<0 || y+j>=DIMENSION) {
-                	continue;
-                }
-                Chip chip = getChip(x+i,y+j);
-                if((chip != null && chip.player()==player) && (i!=0 || j!=0)) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-
-    public GameBoard(ChipList player1, ChipList player2) {
-        this.player1 = player1;
-        this.player2 = player2;
-        board = new Chip[8][8];
-    }
-
-    /**
-     * Checks to see if a location on the board has a Chip.
-     * Returns true if there is a chip, false if there is not.
-     */
-    public boolean hasChip(int x, int y) {
-        return board[y][x] != null;
-    }
-
-    public void doMove(int player, Move m) {
-        ChipList chips = getChipList(player);
-        Chip chip;
-        if(m.moveKind == Move.ADD) {
-            chip = chips.selectChip(10-chips.getChipsLeft());
-            placeChip(chip, m.x1, m.y1);
-        }
-        else if(m.moveKind == Move.STEP) {
-			chip = getChip(m.x2, m.y2);
-			removeChip(m.x2, m.y2);
-			placeChip(chip, m.x1, m.y1);
-        }
-        return;
-        }
-
-    /** 
-     *  Places Chip c at x, y of the board. It should be called by doMove()
-     *  and copy().
-     */
-    public void placeChip(Chip c, int x, int y) {
-        c.set(x, y);
-        board[y][x] = c;
-    }
-
-    public int evaluate(int player, Move m) {
-    	//initializing the return variable
-    	int score = 0;
-    	//copy Gameboard
-	    GameBoard gbNew = this.copy();
-    	//initializing important fields
-    	int opponent = Math.abs(player-1);
-    	int chipsOnBoardPlayer = getChipList(player).getChipsLeft();
-    	int totalBlocks = GameBoard.DIMENSION * GameBoard.DIMENSION;//64 blocks
-    	//the move is performed; player or color seem to be the same
-    	gbNew.doMove(player, m);
-    	//check if there's a network, if either player wins return corresponding score
-    	if(gbNew.hasNetwork(player)) {
-    			return MAXIMUM_SCORE;
-    	}
-    	if(gbNew.hasNetwork(opponent)) {
-    			return -MAXIMUM_SCORE;	
-    	}
-    	//penalizing for chips next to each other
-    	if(this.adjacentToChip(player, m.x1, m.y1)) {
-  			    score -= 10;
-    	}    	
-    	//initializing other important fields
-    	int chipsInStartPlayer = gbNew.chipsInStart(player);
-    	int chipsInGoalPlayer = gbNew.chipsInGoal(player);
-    	
-    	//Indeed rewarding a chip in start and goal
-    	//makes the strategy try to put a chip there.
-    	if(Math.abs(chipsInStartPlayer-2) == 1) {
-    			score -= 5;
-    	}
-    	if(Math.abs(chipsInStartPlayer-2) == 2) {
-    			score -= 10;
-    	}
-    	if(Math.abs(chipsInGoalPlayer-2) == 1) {
-    			score -= 5;
-    	}
-    	if(Math.abs(chipsInGoalPlayer-2) == 2) {
-    			score -= 10;
-    	}
-    	//evaluate player's score and return score
-   		if(gbNew.missingChips(player) == gbNew.missingChips(opponent)){
-    		score += chipsOnBoardPlayer;    
-    	}else{
-      		score += gbNew.missingChips(player);
-    	}
-    	//initializing last variable to store the value of the score from strategy
-    	int strategyScore = gbNew.strategyInGame(player);
-    	//here i add the strategy points to the score
-    	score += strategyScore;
-    	return score;
-  	}
-    
-    public int chipsInStart(int player) {
-    	Chip chip = getChipList(player).front();
-    	int total = 0;
-    	while(chip.isValid()) {
-    		if(inStart(chip) && (chip.x()!=0 && chip.y()!=0)) {
-    			total++;
-    		} 
-    		chip = chip.next();
-    	}	
-    	return total;
-    }
-
-    public int chipsInGoal(int player) {
-    	Chip chip = getChipList(player).front();
-    	int total = 0;
-    	while(chip.isValid()) {
-    		if(inGoal(chip)) {
-    			total++;
-    		} 
-    		chip = chip.next();
-    	}	
-    	return total;
-    }
-
-    public int strategyInGame(int player) {
-    //initializing return value
-    int addToScore = 0;
-    //initializing important fields
-    int opponent = Math.abs(player-1);
-    int chipsOnBoardPlayer = getChipList(player).getChipsLeft();
-    int chipsOnBoardOpponent = getChipList(opponent).getChipsLeft();
-    int neededChipsPlayer = missingChips(player);
-    int neededChipsOpponent = missingChips(opponent);
-    //int networkBlocksPlayer = this.networkBlocksAvailable(player);
-    //int networkBlocksOpponent = this.networkBlocksAvailable(opponent);
-    //checking if there is a winner, if THE GAME IS FINISHED
-    //THE GAME IS UNFINISHED
-    //im considering that the implementation of strategy can be easier if
-    //the field scorePlayer(the output of evaluate) is initialized out from evaluate function, 
-    //so that the evaluate function can reset its value but the
-    //other StrategyInGame can have. Or maybe having a function to get the Score
-    //of the given player. The function can be called getScore(int player)
-        
-	//Here the game is unfinished 
-	//and PLAYER HAS A BETTER SCORE
-           if(neededChipsPlayer > neededChipsOpponent){
-              //if the player has a better score than the opponent
-              //and the opponent needs more than 4 chips to complete
-              //a network
-              if(neededChipsOpponent > 4){
-                  //check who has more network blocks available
-                  if(chipsOnBoardPlayer > chipsOnBoardOpponent){
-                      //if the player has more network blocks available
-                      //expand (neutral strategy)
-                      addToScore = 10;
-                  }else if(chipsOnBoardPlayer == chipsOnBoardOpponent){
-                      //if player and opponent have equal number of blocks available
-                      //expand (neutral strategy)
-                      addToScore = 9;
-                  }else{
-                      //if opponent has more network blocks available 
-                      //complete network as soon as possible
-                      //minimum 6 chips (offensive strategy)
-                      addToScore = 8;
-                  }
-              }else if(neededChipsOpponent == 4){
-                  //check who has more network blocks available
-                  if(chipsOnBoardPlayer > chipsOnBoardOpponent){
-                      //if the player has more network blocks available
-                      //complete network as soon as possible
-                      //minimum 6 chips (offensive strategy)
-                      addToScore = 7;
-                  }else if(chipsOnBoardPlayer == chipsOnBoardOpponent){
-                      //if player and opponent have equal number of blocks available
-                      //complete network as soon as possible
-                      //minimum 6 chips (offensive strategy)
-                      addToScore = 6;
-                  }else{
-                      //if opponent has more network blocks available 
-                      //block the opponent(defensive strategy)
-                      addToScore = 5;
-                  }
-              }else if(neededChipsOpponent == 3){
-                  //check who has more network blocks available
-                  if(chipsOnBoardPlayer > chipsOnBoardOpponent){
-                      //if the player has more network blocks available
-                      //block the opponent(defensive strategy)
-                      addToScore = 4;
-                  }else if(chipsOnBoardPlayer == chipsOnBoardOpponent){
-                      //if player and opponent have equal number of blocks available
-                      //expand (neutral strategy), or maybe block the opponent??
-                      addToScore = 3;
-                  }else{
-                      //if opponent has more network blocks available 
-                      //block the opponent(defensive strategy)
-                      addToScore = 2;
-                  }
-              }else {
-              //else if opponent is missing 2 chips to complete his network
-              //it means that player only needs 1 more chip to complete his network
-              //because in this case player has a better score than opponent
-              //So, we let minmax handle it
-                  addToScore = -2;
-              }
-            }else if(neededChipsPlayer == neededChipsOpponent){
-                //in case that there is a tie in scores and the game is unfinished 
-                //(very odd situation because evaluate tries to be precise when
-                //calculating the score)
-                if(neededChipsPlayer >= 4){
-                    //expand (neutral strategy)
-                    addToScore = 3;
-                }else if(neededChipsPlayer == 3){
-                    //complete the network as soon as possible
-                    //minimum 6 chips (offensive strategy)
-                    addToScore = 2;
-                }else if(neededChipsPlayer == 2){
-                	//block the opponent (defensive strategy)
-                	addToScore = 1;
-                }else{
-                	//if the player only needs one more chip 
-                	//to complete a network, let minmax handle it
-                	addToScore = -3;
-                }
-            }else {
-              //if the player has a better score than the opponent
-              //and the opponent needs more than 4 chips to complete
-              //a network
-              if(neededChipsOpponent > 4){
-                  //check who has more network blocks available
-                  if(chipsOnBoardPlayer > chipsOnBoardOpponent){
-                      //if the player has more network blocks available
-                      //expand (neutral strategy)
-                      addToScore = 1;
-                  }else if(chipsOnBoardPlayer == chipsOnBoardOpponent){
-                      //if player and opponent have equal number of blocks available
-                      //expand (neutral strategy)
-                      addToScore = -1;
-                  }else{
-                      //if opponent has more network blocks available 
-                      //complete network as soon as possible
-                      //minimum 6 chips (offensive strategy)
-                      addToScore = -2;
-                  }
-              } else if(neededChipsOpponent == 4){
-                  //check who has more network blocks
-                  if(chipsOnBoardPlayer > chipsOnBoardOpponent){
-                      //if the player has more network blocks available
-                      //complete network as soon as possible
-                      //minimum 6 chips (offensive strategy)
-                      addToScore = -1;
-                  }else if(chipsOnBoardPlayer == chipsOnBoardOpponent){
-                      //if player and opponent have equal number of blocks available
-                      //expand(neutral strategy)
-                      addToScore = -2;
-                  }else{
-                      //if opponent has more network blocks available 
-                      //complete network as soon as possible
-                      //minimum 6 chips (offensive strategy)
-                      addToScore = -3;
-                  }
-              } else if(neededChipsOpponent == 3 || neededChipsOpponent == 2){
-                      //block the opponent(defensive strategy)
-                      addToScore = -3;
-              }else{
-              //else if opponent is missing 2 chips to complete his network
-              //it means that player only needs 1 more chip to complete his network
-              //because in this case player has a better score than opponent
-              //So, we let minmax handle it
-                      addToScore = -4;
-              }
-           }
-        return addToScore;
-    }
-
-     public int missingChips(int player) {
-        int count = 0;
-        Chip chip = new Chip(player, 0, 0, new ChipList());
-        GameBoard gb = this.copy();
-        for (int j = 0; j < DIMENSION; j++) {
-            for (int i = 0; i < DIMENSION; i++) {
-                if (!gb.hasChip(i, j)) {
-                    gb.placeChip(chip, i, j);
-                    if (gb.hasNetwork(player)) {
-                        count++;
-                    }
-                    gb.removeChip(i, j);
-                }
-            }
-        }
-        return count;
-    }
-
-
-    /**
-     *  Removes a Chip from the board (resets it).
-     *  If there is no chip in the spot, do nothing.
-     *  It calls the Chip's reset method so the Chip does not reference that spot anymore.
+     *  evaluate(), missingChips() and hasNetwork() each time one call in SAMPLE_INTERVAL
+     *  as a Flight Recorder event, when the recording has the event turned on.  The
+     *  other calls only count down, and no event is made before Flight Recorder has
+     *  started, so the events cost next to nothing when they are off.
      */
-    public void removeChip(int x, int y) {
-        if (hasChip(x, y)) {
-            board[y][x].reset();
-            board[y][x] = null;
-        }
-    }
+    static final int SAMPLE_INTERVAL = Integer.getInteger("player.jfr.sampleInterval", 1024);
 
     /**
-     *  Returns the chip at coordinate (x, y) of the Gameboard.
-     *  If There is no Chip it returns null.
+     *  Square (x, y) of the board is bit (y * 8 + x) of an occupancy mask.
+     *  START_AREA and GOAL_AREA hold the goal squares of each player, indexed by color.
+     *  START_EDGE is the whole starting edge, corners included, which inStart() has always used.
+     *  ALLOWED holds the squares each player may ever put a chip on.
      */
-    public Chip getChip(int x, int y) {
-        if (hasChip(x, y)) {
-            return board[y][x];
-        } else {
-            return null;
-        }
-    }
-
+    private static final long ROW_0 = 0x00000000000000FFL;
+    private static final long ROW_7 = 0xFF00000000000000L;
+    private static final long COLUMN_0 = 0x0101010101010101L;
+    private static final long COLUMN_7 = 0x8080808080808080L;
+    private static final long CORNERS = (ROW_0 | ROW_7) & (COLUMN_0 | COLUMN_7);
+    private static final long[] START_AREA = { ROW_0 & ~CORNERS, COLUMN_0 & ~CORNERS };
+    private static final long[] START_EDGE = { ROW_0, COLUMN_0 };
+    private static final long[] ALLOWED = { ~(COLUMN_0 | COLUMN_7), ~(ROW_0 | ROW_7) };
+    private static final long[] GOAL_AREA = { ROW_7 & ~CORNERS, COLUMN_7 & ~CORNERS };
 
     /**
-     *  Creates a copy of the Gameboard and all the chips that are on it.
-     *  It should not change the original Gameboard.
+     *  Zobrist keys, one per color and square, and one for white to move.
+     *  The seed is fixed so that a position hashes to the same key in every run.
      */
-
-    public void copy(GameBoard g) {
-        Chip c;
-        for (int j = 0; j < board.length; j++) {
-            for (int i = 0; i < board.length; i++) {
-                if (g.hasChip(i, j)) {
-                    c = (g.getChip(i, j)).copy();
-                    this.placeChip(c, i, j);
-                }
+    private static final long[][] ZOBRIST = new long[2][DIMENSION * DIMENSION];
+    private static final long WHITE_TO_MOVE;
+
+    static {
+        Random random = new Random(0x6E6574776F726BL);
+        for (int player = 0; player < 2; player++) {
+            for (int square = 0; square < DIMENSION * DIMENSION; square++) {
+                ZOBRIST[player][square] = random.nextLong();
             }
         }
+        WHITE_TO_MOVE = random.nextLong();
     }
 
-    public GameBoard copy() {
-		GameBoard copy = new GameBoard(new ChipList(player1.player()), new ChipList(player2.player()));
-		Chip player1chip = player1.front();
-		Chip copy1;
-		Chip player2chip = player2.front();
-		Chip copy2;
-		while(player1chip.isValid()) {
-			copy1 = new Chip(player1.player(), 0, 0, copy.player1);
-			copy2 = new Chip(player2.player(), 0, 0, copy.player2);
-			if(player1chip.x()!=0 || player1chip.y()!=0) {
-				copy.placeChip(copy1, player1chip.x(), player1chip.y());
-			}
-			if(player2chip.x()!=0 || player2chip.y()!=0) {
-				copy.placeChip(copy2, player2chip.x(), player2chip.y());
-			}
-			copy.player1.insertBack(copy1);
-			copy.player2.insertBack(copy2);
-			player1chip = player1chip.next();
-			player2chip = player2chip.next();
-		}
-		
-		if(player1.getChipsLeft()!=copy.player1.getChipsLeft() || player2.getChipsLeft()!=copy.player2.getChipsLeft()) {
-			System.out.println("FALSE");
-		}
-		
-		return copy;
-    }
-
-
     /**
-     *  Helper function for findConnections() and hasNetwork().
-     *  Returns the Chips in the starting goal area of the player.
-     *  White's start goals = board[0][n] for any n greater than 0 and less than 7.
-     *  Black's start goals = board[n][0] for any n greater than 0 and less than 7.
+     *  NEIGHBORS[square] is the mask of the up to eight squares around square.
      */
-    public ChipList startGoal(int player) {
-        ChipList lst = new ChipList();
-        Chip c;
-        if (player == 0) {
-            for (int i = 1; i < board.length - 1; i++) {
-                if (hasChip(i, 0)) {
-                    c = getChip(i, 0);
-                    lst.insertFront(c.copy());
-                }
-            }
-        } else {
-            for (int j = 1; j < board.length - 1; j++) {
-                if (hasChip(0, j)) {
-                    c = getChip(0, j);
-                    lst.insertFront(c.copy());
+    private static final long[] NEIGHBORS = new long[DIMENSION * DIMENSION];
+
+    static {
+        for (int square = 0; square < DIMENSION * DIMENSION; square++) {
+            int x = square % DIMENSION;
+            int y = square / DIMENSION;
+            for (int i = Math.max(0, x - 1); i <= Math.min(DIMENSION - 1, x + 1); i++) {
+                for (int j = Math.max(0, y - 1); j <= Math.min(DIMENSION - 1, y + 1); j++) {
+                    if (i != x || j != y) {
+                        NEIGHBORS[square] |= squareBit(i, j);
+                    }
                 }
             }
         }
-        return lst;
     }
 
     /**
-     *  Helper function for findConnections() and hasNetwork().
-     *  Returns whether a Chip is in the starting goal area or not.
+     *  RAYS[d][square] is the mask of every square from square to the edge of the board
+     *  in direction d, numbered 1-8 as for findConnections().  DIRECTIONS holds the
+     *  direction between every pair of squares.
      */
-    public boolean inStart(Chip c) {
-        int x = c.x();
-        int y = c.y();
-        int player = c.player();
-        if (player == 0) {
-            return y == 0;
-        } else {
-            return x == 0;
+    private static final int[] STEP_X = { 0, -1, 0, 1, -1, 1, -1, 0, 1 };
+    private static final int[] STEP_Y = { 0, -1, -1, -1, 0, 0, 1, 1, 1 };
+    private static final long[][] RAYS = new long[9][DIMENSION * DIMENSION];
+    private static final byte[] DIRECTIONS = new byte[DIMENSION * DIMENSION * DIMENSION * DIMENSION];
+
+    static {
+        for (int direction = 1; direction <= 8; direction++) {
+            for (int square = 0; square < DIMENSION * DIMENSION; square++) {
+                int x = square % DIMENSION + STEP_X[direction];
+                int y = square / DIMENSION + STEP_Y[direction];
+                while (x >= 0 && x < DIMENSION && y >= 0 && y < DIMENSION) {
+                    RAYS[direction][square] |= squareBit(x, y);
+                    DIRECTIONS[square * DIMENSION * DIMENSION + y * DIMENSION + x] = (byte) direction;
+                    x += STEP_X[direction];
+                    y += STEP_Y[direction];
+                }
+            }
         }
     }
 
     /**
-     * Helper function for findConnections() and hasNetwork().
-     * Checks if a chip is in the opposite goal.
-     * Black is 0, and goals are N --> S ends of the board.
-     * White is 1, and goals are W --> E ends of the board.
+     * Gameboard invariants:
+     *  1) Board size will not change.
+     *  2) The corner bits of occupied[0] and occupied[1] should never be set.
+     *       - Methods that alter the location of a chip or place a chip should check for this.
+     *  3) For any Chip c on (i, j) of the Gameboard, c.x() == i and c.y() == j, and
+     *       board[j * DIMENSION + i] == c.  placeChip() and removeChip() keep board so.
+     *  4) White goals should only have white chips and black goals should only have black chips.
+     *  5) occupied[0] & occupied[1] == 0, a square never holds chips of both colors.
+     *  6) forbidden[p] == clusterSquares(occupied[p]).  placeChip() and removeChip() keep it so;
+     *       code that flips occupancy bits by hand must put them back before asking for moves.
      */
-    public boolean inGoal(Chip c) {
-        int x = c.x();
-        int y = c.y();
-        int player = c.player();
-        if (player == 0) {
-            return x != 0 && x != 7 && y == 7;
-        } else {
-            return x == 7 && y != 0 && y != 7;
-        }
+
+    public GameBoard() {
+        this(new ChipList(0), new ChipList(1));
     }
 
-    /**  
-     *  findConnections takes in a Chip c and looks for all connected chips of the same color.
-     *  It assigns each connected chip a direction and returns connected chips in a ChipList.
-     *
-     *   --- --- ---         -------------- -------------- --------------   
-     *  | 1 | 2 | 3 |       | x - 1, y - 1 |   x, y - 1   | x + 1, y - 1 |
-     *   --- --- ---         -------------- -------------- --------------
-     *  | 4 | @ | 5 |   ==  |   x - 1, y   | Chip c (x,y) |   x + 1, y   |
-     *   --- --- ---         -------------- -------------- --------------
-     *  | 6 | 7 | 8 |       | x - 1, y + 1 |   x, y + 1   | x + 1, y + 1 |
-     *   --- --- ---         -------------- -------------- --------------
-     *
+    /**
+     *  Returns the mask bit of square (x, y).
      */
-    public ChipList findConnections(Chip c) {
-        Chip n;
-        ChipList lst = new ChipList();
-        int x = c.x();
-        int y = c.y();
-        int player = c.player();
-        int x0 = x - 1;
-        int y0 = y - 1;
-        while (x0 > 0 && y0 > 0) {
-            if (hasChip(x0, y0)) {
-                if (getChip(x0, y0).player() == player) {
-                    n = getChip(x0, y0).copy();
-                    n.setDirection(1);
-                    lst.insertFront(n);
-                }
-                break;
-            }
-            x0--;
-            y0--;
-        }
-        int y1 = y - 1;
-        while (y1 >= 0) {
-            if (hasChip(x, y1)) {
-                if (getChip(x, y1).player() == player) {
-                    n = getChip(x, y1).copy();
-                    n.setDirection(2);
-                    lst.insertFront(n);
-                }
-                break;
-            }
-            y1--;
-        }
-        int x2 = x + 1;
-        int y2 = y - 1;
-        while (x2 < board.length && y2 >= 0) {
-            if (hasChip(x2, y2)) {
-                if (getChip(x2, y2).player() == player) {
-                    n = getChip(x2, y2).copy();
-                    n.setDirection(3);
-                    lst.insertFront(n);
-                }
-                break;
-            }
-            x2++;
-            y2--;
-        }
-        int x3 = x - 1;
-        while (x3 >= 0) {
-            if (hasChip(x3, y)) {
-                if (getChip(x3, y).player() == player) {
-                    n = getChip(x3, y).copy();
-                    n.setDirection(4);
-                    lst.insertFront(n);
-                }
-                break;
-            }
-            x3--;
-        }
-        int x4 = x + 1;
-        while (x4 < board.length) {
-            if (hasChip(x4, y)) {
-                if (getChip(x4, y).player() == player) {
-                    n = getChip(x4, y).copy();
-                    n.setDirection(5);
-                    lst.insertFront(n);
-                }
-                break;
-            }
-            x4++;
-        }
-        int x5 = x - 1;
-        int y5 = y + 1;
-        while (x5 >= 0 && y5 < board.length) {
-            if (hasChip(x5, y5)) {
-                if (getChip(x5, y5).player() == player) {
-                    n = getChip(x5, y5).copy();
-                    n.setDirection(6);
-                    lst.insertFront(n);
-                }
-                break;
-            }
-            x5--;
-            y5++;
-        }
-        int y6 = y + 1;
-        while (y6 < board.length) {
-            if (hasChip(x, y6)) {
-                if (getChip(x, y6).player() == player) {
-                    n = getChip(x, y6).copy();
-                    n.setDirection(7);
-                    lst.insertFront(n);
-                }
-                break;
-            }
-            y6++;
-        }
-        int x7 = x + 1;
-        int y7 = y + 1;
-        while (x7 < board.length && y7 < board.length) {
-            if (hasChip(x7, y7)) {
-                if (getChip(x7, y7).player() == player) {
-                    n = getChip(x7, y7).copy();
-                    n.setDirection(8);
-                    lst.insertFront(n);
-                }
-                break;
-            }
-            x7++;
-            y7++;
-        }
-        return lst;
+    static long squareBit(int x, int y) {
+        return 1L << (y * DIMENSION + x);
     }
 
     /**
-     *  Checks to see if a player has a network on the Gameboard.
-     *  @param player is the player passed in.
-     */ 
-    public boolean hasNetwork(int player) {
-        return networkHelper(player, null, null);
+     *  Returns the Zobrist key of the chips on the board.  It is kept up to date by
+     *  placeChip() and removeChip(), and so by doMove() and undoMove().
+     */
+    long hash() {
+        return hash;
     }
 
     /**
-     *  Helper function for hasNetwork
-     *  @param player is the player passed in.
-     *  @param c is the chip it searches for a connection on.
-     *  @param count is the number of chips in the network built so far.
-     *  @param lst is the list of Chips in the network so far
+     *  Returns the Zobrist key of the position with the given player to move.
      */
- 
-     private boolean networkHelper(int player, Chip c, ChipList lst) {
-        boolean network = false;
-        if (c == null) {
-            ChipList strt = startGoal(player);
-            if (strt.isEmpty()) {
-                return false;
-            } else {
-                Chip curr = strt.front();
-                while (curr.isValid()) {
-                    ChipList current = new ChipList();
-                    network = networkHelper(player, curr, current);
-                    if (network == true) {
-                        return network;
-                    }
-                    curr = curr.next();
-                }
-            }
-        } else {
-            if (inGoal(c)) {
-                if (lst.length() + 1 >= 6) {
-                    return true;
-                }
-                return false;
-            }
-            ChipList connections = findConnections(c);
-            if (connections.isEmpty()) {
-                return false;
-            }
-            ChipList nwlst = lst.copy();
-            nwlst.insertFront(c.copy());
-            Chip cur = connections.front();
-            while (cur.isValid()) {
-                if (cur.direction() != c.direction() && !lst.inList(cur) && !inStart(cur)) {
-                    network = networkHelper(player, cur, nwlst);
-                    if (network == true) {
-                        return network;
-                    }
-                }
-                cur = cur.next();
-            }
+    long hash(int player) {
+        if (player == 1) {
+            return hash ^ WHITE_TO_MOVE;
         }
-        return network;
+        return hash;
     }
 
-
-    public String toString() {
-        String divide = "\n" + "---------------------------------" + "\n";
-        String s = "" + divide;
-        for (int j = 0; j < board.length; j++) {
-            s = s + "|";
-            for (int i = 0; i < board.length; i++) {
-                if ((i == 0 && j == 0) || (i == 0 && j == 7) || (i == 7 && j == 0) || (i == 7 && j == 7)) {
-                    s = s + " X |";
-                } else if (board[j][i] == null) {
-                    s = s + "   |";
-                } else {
-                    s = s + " " + board[j][i].player() + " |";
-                }
+    /**
+     *  Recomputes the Zobrist key from the occupancy masks.
+     */
+    private void rehash() {
+        hash = 0;
+        for (int player = 0; player < 2; player++) {
+            long chips = occupied[player];
+            while (chips != 0) {
+                hash ^= ZOBRIST[player][Long.numberOfTrailingZeros(chips)];
+                chips &= chips - 1;
             }
-            s = s + divide;
         }
-        return s;
     }
 
-    public static void main (String[] args) {
-        GameBoard game = new GameBoard();
-        ChipList black = new ChipList();
-        Chip c20 = new Chip(0, 2, 0);
-        black.insertFront(c20);
-        Chip c25 = new Chip(0, 2, 5);
-        black.insertFront(c25);
-        Chip c35 = new Chip(0, 3, 5);
-        black.insertFront(c35);
-        Chip c13 = new Chip(0, 1, 3);
-        black.insertFront(c13);
-        Chip c33 = new Chip(0, 3, 3);
-        black.insertFront(c33);
-        Chip c55 = new Chip(0, 5, 5);
-        black.insertFront(c55);
-        Chip c57 = new Chip(0, 5, 7);
-        black.insertFront(c57);
-
-        game.placeChip(c20, 2, 0);
-        game.placeChip(c25, 2, 5);
-        game.placeChip(c35, 3, 5);
-        game.placeChip(c13, 1, 3);
-        game.placeChip(c33, 3, 3);
-        game.placeChip(c55, 5, 5);
-        game.placeChip(c57, 5, 7);
-        System.out.println(black + "size: " + black.length());
-        System.out.println(game);
-
-        ChipList connect35 = game.findConnections(c35);
-        System.out.println(connect35);
-
-        ChipList blackstart = game.startGoal(0);
-        System.out.println(blackstart);
-
-        System.out.println(game.findConnections(c20));
-
-        GameBoard gb = new GameBoard();
-        gb.copy(game);
-        System.out.println(gb);
-
-        System.out.println(game.hasNetwork(0));
-
-        gb.removeChip(2, 0);
-        gb.removeChip(2, 5);
-        gb.removeChip(1, 3);
-
-        Chip c60 = new Chip(0, 6, 0);
-        Chip c65 = new Chip(0, 6, 5);
-
-        gb.placeChip(c60, 6, 0);
-        gb.placeChip(c65, 6, 5);
-
-        System.out.println(gb);
-        System.out.println(game);
-
-        System.out.println(gb.hasNetwork(0));
-
-        Chip w62 = new Chip(1, 6, 2);
-        gb.placeChip(w62, 6, 2);
-
-        System.out.println(gb);
-        System.out.println(gb.hasNetwork(0));
-
+    /**
+     *  Returns the mask of every chip of the given player on the board.
+     */
+    long chips(int player) {
+        return occupied[player];
     }
 
-}/* GameBoard.java */
-
-package player;
-
-import player.list.*;
-
-
-public class GameBoard {
-
-    private Chip[][] board;
-    private ChipList player1;
-    private ChipList player2;
-    private static final int DIMENSION = 8;
-    static final int MAXIMUM_SCORE = 200;
-
     /**
-     * Gameboard invariants:
-     *  1) Board size will not change.
-     *  2) board[0][0], board[0][7], board[7][0], board[7][7] should always point to null.
-     *       - Methods that alter the location of a chip or place a chip should check for this.
-     *  3) For any Chip c on (i, j) of the Gameboard, c.x() == i and c.y() == j.
-     *  4) White goals should only have white chips and black goals should only have black chips.
+     *  Returns the mask of the squares the player may ever put a chip on.
      */
-
-    public GameBoard() {
-        board = new Chip[8][8];
+    static long allowedSquares(int player) {
+        return ALLOWED[player];
     }
 
     ChipList getChipList(int player) {
@@ -885,101 +200,138 @@ public class GameBoard {
 
     MoveList validMoves(int player) {
         MoveList validList = new MoveList();
-        Move currMove;
-        Chip chip;
+        int[] moves = new int[MAXIMUM_MOVES];
+        int count = generateMoves(player, moves);
+        for(int i=0; i<count; i++) {
+            validList.insertBack(unpackMove(moves[i]));
+        }
+        return validList;
+    }
+
+    /**
+     * generateMoves writes every valid move of the player into moves, packed as by packMove(),
+     * and returns how many there are.  It allocates nothing, so search can give it one buffer
+     * of MAXIMUM_MOVES ints per ply.  ADD moves come in column order; STEP moves come chip by
+     * chip in ChipList order, each in column order.
+     **/
+
+    int generateMoves(int player, int[] moves) {
+        int count = 0;
         ChipList chips = getChipList(player);
         if(chips.getChipsLeft()==0) {
-	        for(int chp=0; chp<MachinePlayer.NUM_CHIPS; chp++) {
-	        	for(int i=0; i<DIMENSION; i++) {
-	            	for(int j=0; j<DIMENSION; j++) {
-	         	     	chip = chips.selectChip(chp);
-	         	     	currMove = new Move(i, j, chip.x(), chip.y());
-	         	     	if(isValidMove(player, currMove)) {
-	         	     		validList.insertBack(currMove);
-	         	     	}
-	            	}
-	        	}	
-	        }
+            Chip chip = chips.front();
+            while(chip.isValid()) {
+                long open = stepSquares(player, squareBit(chip.x(), chip.y()));
+                count = writeMoves(open, (Move.STEP << 12) | (chip.x() << 3) | chip.y(), moves, count);
+                chip = chip.next();
+            }
         }
         else {
-        	for(int i=0; i<DIMENSION; i++) {
-	            for(int j=0; j<DIMENSION; j++) {
-	              	currMove = new Move(i, j);
-	        	     	if(isValidMove(player, currMove)) {
-	      	     		validList.insertBack(currMove);  
-	           		}
-	       		}
-        	}
+            count = writeMoves(openSquares(player), Move.ADD << 12, moves, count);
         }
-        return validList;
+        return count;
+    }
+
+    /**
+     * stepSquares returns the mask of the squares the player's chip on square from may step to.
+     **/
+
+    private long stepSquares(int player, long from) {
+        return ALLOWED[player] & ~(occupied[0] | occupied[1]) & ~clusterSquares(occupied[player] & ~from);
+    }
+
+    /**
+     * writeMoves writes one move to each square of the mask into moves, starting at count and
+     * going column by column, and returns the new count.
+     **/
+
+    private static int writeMoves(long squares, int move, int[] moves, int count) {
+        for(int i=0; i<DIMENSION && squares != 0; i++) {
+            long column = squares & (COLUMN_0 << i);
+            squares ^= column;
+            while(column != 0) {
+                int j = Long.numberOfTrailingZeros(column) / DIMENSION;
+                column &= column - 1;
+                moves[count++] = move | (i << 9) | (j << 6);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * isValidSpace takes in an x and y, representing a space on the board, and an integer representing
+     * the player's color and returns whether it is valid to move a players piece to that space.
+     **/
+
+    boolean isValidMove(int player, Move m) {
+    	if(m.moveKind != Move.ADD && m.moveKind != Move.STEP) {
+    		return false;
+    	}
+    	if((m.x1<0 || m.x1>=DIMENSION || m.y1<0 || m.y1>=DIMENSION) ||
+    	   (m.moveKind == Move.STEP && (m.x2<0 || m.x2>=DIMENSION || m.y2<0 || m.y2>=DIMENSION))) {
+    		return false;
+    	}
+    	return isValidMove(player, packMove(m));
     }
 
     /**
-     * isValidSpace takes in an x and y, representing a space on the board, and an integer representing
-     * the player's color and returns whether it is valid to move a players piece to that space.
+     * isValidMove for a move packed by packMove().
      **/
 
-    boolean isValidMove(int player, Move m) {
-    	Chip chip;
-
-    	if(m.moveKind == Move.ADD) {
-    		if(getChipList(player).getChipsLeft() == 0){
-    			return false;
-    		}
+    boolean isValidMove(int player, int move) {
+    	int kind = move >>> 12;
+    	int x1 = (move >>> 9) & 7;
+    	int y1 = (move >>> 6) & 7;
+    	if(kind == Move.ADD) {
+    		return getChipList(player).getChipsLeft() > 0 && isValidSpace(x1, y1, player);
     	}
-    	if(m.moveKind == Move.STEP) {
-    		if((m.x1 == m.x2 && m.y1 == m.y2) ||
-    		   (getChip(m.x2,m.y2)==null || getChip(m.x2, m.y2).player()!=player)) {
+    	if(kind == Move.STEP) {
+    		long from = squareBit((move >>> 3) & 7, move & 7);
+    		if((occupied[player] & from) == 0) {
     			return false;
     		}
- 			chip = getChip(m.x2, m.y2);
-    		removeChip(m.x2,m.y2);
-    		if(!isValidSpace(m.x1, m.y1, player)) {
-    			placeChip(chip, m.x2, m.y2);
-    			return false;
-    		}
-    		else {
-    			placeChip(chip, m.x2, m.y2);
-    			return true;
-    		}
-    	}
-    	if(!isValidSpace(m.x1, m.y1, player)) {
-    		return false;
+    		return (stepSquares(player, from) & squareBit(x1, y1)) != 0;
     	}
-
-    	return true;
+    	return false;
     }
     
     boolean isValidSpace(int x, int y, int player) {
-        if((x<0 || x>=DIMENSION || y<0 || y>=DIMENSION) || 
-           hasChip(x,y) ||
-           (player==0 && (x==0 || x==7)) ||
-           (player==1 && (y==0 || y==7))
-           ) {
+        if(x<0 || x>=DIMENSION || y<0 || y>=DIMENSION) {
             return false;
         }
-        int numberChipsIn3x3=0;
-        for(int i=-1; i<=1; i++) {
-            for(int j=-1; j<=1; j++) {
-                if(x+i<0 || x+i>=DIMENSION || y+j<0 || y+j>=DIMENSION) {
-                	continue;
-                }
-                Chip chip = getChip(x+i,y+j);
-                if(chip != null && chip.player()==player) {
-                    numberChipsIn3x3++;
-                    if(adjacentToChip(player, x+i, y+j)) {
-                 	   return false;
-                	}
-                }
-                if(i==0 && j==0) {
-                	numberChipsIn3x3++;
-                }
+        return (openSquares(player) & squareBit(x, y)) != 0;
+    }
+
+    /**
+     * openSquares returns the mask of the squares where the player may put a chip: empty,
+     * outside the other player's goals, and not making a cluster of three or more chips.
+     **/
+
+    long openSquares(int player) {
+        return ALLOWED[player] & ~(occupied[0] | occupied[1]) & ~forbidden[player];
+    }
+
+    /**
+     * clusterSquares returns the mask of the squares where one more of the given chips
+     * would make a cluster: those next to two of the chips, and those next to a chip that
+     * already has a neighbor.
+     **/
+
+    static long clusterSquares(long chips) {
+        long nextToOne = 0;
+        long nextToTwo = 0;
+        long nextToPair = 0;
+        long remaining = chips;
+        while(remaining != 0) {
+            long neighbors = NEIGHBORS[Long.numberOfTrailingZeros(remaining)];
+            remaining &= remaining - 1;
+            nextToTwo |= nextToOne & neighbors;
+            nextToOne |= neighbors;
+            if((neighbors & chips) != 0) {
+                nextToPair |= neighbors;
             }
         }
-        if(numberChipsIn3x3>2){
-            return false;
-        }
-        return true;
+        return nextToTwo | nextToPair;
     }
 
     /**
@@ -988,25 +340,91 @@ public class GameBoard {
      **/
 
     boolean adjacentToChip(int player, int x, int y) {
-        for(int i=-1; i<=1; i++) {
-            for(int j=-1; j<=1; j++) {
-                if(x+i<0 || x+i>=DIMENSION || y+j<0 || y+j>=DIMENSION) {
-                	continue;
-                }
-                Chip chip = getChip(x+i,y+j);
-                if((chip != null && chip.player()==player) && (i!=0 || j!=0)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return (NEIGHBORS[y * DIMENSION + x] & occupied[player]) != 0;
     }
 
 
     public GameBoard(ChipList player1, ChipList player2) {
         this.player1 = player1;
         this.player2 = player2;
-        board = new Chip[8][8];
+        occupied = new long[2];
+        forbidden = new long[2];
+    }
+
+    /**
+     *  Returns an empty board with a full ChipList of MachinePlayer.NUM_CHIPS chips for
+     *  each player, black's first.
+     */
+    static GameBoard newBoard() {
+        ChipList black = new ChipList(0);
+        ChipList white = new ChipList(1);
+        for (int i = 0; i < MachinePlayer.NUM_CHIPS; i++) {
+            black.insertBack(new Chip(0, 0, 0, black));
+            white.insertBack(new Chip(1, 0, 0, white));
+        }
+        return new GameBoard(black, white);
+    }
+
+    /**
+     *  Returns a newBoard() set up at a position written as the moves that lead to it,
+     *  separated by spaces: "xy" adds a chip to square (x, y), and "xy:xy" steps a chip
+     *  from the first square to the second.  White moves first.  Throws an
+     *  IllegalArgumentException if a move is not valid.
+     */
+    static GameBoard fromMoves(String position) {
+        GameBoard board = newBoard();
+        String[] moves = position.isEmpty() ? new String[0] : position.split(" ");
+        for (int i = 0; i < moves.length; i++) {
+            Move m = parseMove(moves[i]);
+            int player = sideToMove(i);
+            if (!board.isValidMove(player, m)) {
+                throw new IllegalArgumentException("illegal move " + moves[i] + " in \"" + position + "\"");
+            }
+            board.doMove(player, m);
+        }
+        return board;
+    }
+
+    /**
+     *  Returns the color of the player to move after plies moves.
+     */
+    static int sideToMove(int plies) {
+        return plies % 2 == 0 ? 1 : 0;
+    }
+
+    /**
+     *  Returns the color of the player to move in a position written as for fromMoves().
+     */
+    static int sideToMove(String position) {
+        return sideToMove(position.isEmpty() ? 0 : position.split(" ").length);
+    }
+
+    /**
+     *  Returns the Move of one move written as for fromMoves().
+     */
+    static Move parseMove(String move) {
+        int x = move.charAt(0) - '0';
+        int y = move.charAt(1) - '0';
+        if (move.length() == 2) {
+            return new Move(x, y);
+        }
+        return new Move(move.charAt(3) - '0', move.charAt(4) - '0', x, y);
+    }
+
+    /**
+     *  Returns the color of the player who has won once mover has moved, or -1 if
+     *  neither has.  A move that completes networks for both players loses.
+     */
+    int winner(int mover) {
+        boolean mine = hasNetwork(mover);
+        boolean theirs = hasNetwork(1 - mover);
+        if (theirs) {
+            return 1 - mover;
+        }
+        if (mine) {
+            return mover;
+        }
+        return -1;
     }
 
     /**
@@ -1014,23 +432,151 @@ public class GameBoard {
      * Returns true if there is a chip, false if there is not.
      */
     public boolean hasChip(int x, int y) {
-        return board[y][x] != null;
+        return ((occupied[0] | occupied[1]) & squareBit(x, y)) != 0;
     }
 
     public void doMove(int player, Move m) {
+        doMove(player, packMove(m));
+    }
+
+    /**
+     *  doMove for a move packed by packMove().
+     */
+    void doMove(int player, int move) {
         ChipList chips = getChipList(player);
         Chip chip;
-        if(m.moveKind == Move.ADD) {
+        int kind = move >>> 12;
+        int x1 = (move >>> 9) & 7;
+        int y1 = (move >>> 6) & 7;
+        if(kind == Move.ADD) {
             chip = chips.selectChip(10-chips.getChipsLeft());
-            placeChip(chip, m.x1, m.y1);
+            placeChip(chip, x1, y1);
+        }
+        else if(kind == Move.STEP) {
+            int x2 = (move >>> 3) & 7;
+            int y2 = move & 7;
+            chip = getChip(x2, y2);
+            removeChip(x2, y2);
+            placeChip(chip, x1, y1);
+        }
+    }
+
+    /**
+     *  Takes back a move that doMove() made for the player, so that search can walk the
+     *  game tree on one board instead of copying it for every child.
+     *  An ADD is undone by removing the chip again, which gives it back to chipsLeft.
+     *  A STEP is undone by moving the chip back to (x2, y2).
+     *  m must be the last move made on this board by the player.
+     */
+    public void undoMove(int player, Move m) {
+        undoMove(player, packMove(m));
+    }
+
+    /**
+     *  undoMove for a move packed by packMove().
+     */
+    void undoMove(int player, int move) {
+        Chip chip;
+        int kind = move >>> 12;
+        int x1 = (move >>> 9) & 7;
+        int y1 = (move >>> 6) & 7;
+        if(kind == Move.ADD) {
+            removeChip(x1, y1);
+        }
+        else if(kind == Move.STEP) {
+            chip = getChip(x1, y1);
+            removeChip(x1, y1);
+            placeChip(chip, (move >>> 3) & 7, move & 7);
+        }
+    }
+
+    /**
+     *  Packs a Move into an int: moveKind in bits 12-13, then x1, y1, x2 and y2
+     *  in three bits each.  Unused coordinates of ADD and QUIT moves are packed as 0.
+     */
+    static int packMove(Move m) {
+        int packed = m.moveKind << 12;
+        if(m.moveKind != Move.QUIT) {
+            packed |= (m.x1 << 9) | (m.y1 << 6);
+        }
+        if(m.moveKind == Move.STEP) {
+            packed |= (m.x2 << 3) | m.y2;
+        }
+        return packed;
+    }
+
+    /**
+     *  Returns the Move that packMove() packed into an int.
+     */
+    static Move unpackMove(int packed) {
+        int kind = packed >>> 12;
+        int x1 = (packed >>> 9) & 7;
+        int y1 = (packed >>> 6) & 7;
+        if(kind == Move.STEP) {
+            return new Move(x1, y1, (packed >>> 3) & 7, packed & 7);
+        }
+        if(kind == Move.ADD) {
+            return new Move(x1, y1);
+        }
+        return new Move();
+    }
+
+    /**
+     *  perft counts the leaves of the tree of valid moves depth plies deep, the player
+     *  moving first and the players taking turns.  It does not stop at completed networks,
+     *  so it measures move generation alone.  With bulk, the last ply counts the moves
+     *  generated without making them; without, it makes and takes back every move, and
+     *  checks each one against isValidMove() first.  Either count must match the
+     *  reference counts in Perft.
+     */
+    public long perft(int player, int depth, boolean bulk) {
+        if(depth <= 0) {
+            return 1;
         }
-        else if(m.moveKind == Move.STEP) {
-			chip = getChip(m.x2, m.y2);
-			removeChip(m.x2, m.y2);
-			placeChip(chip, m.x1, m.y1);
+        return perft(player, depth, bulk, new int[depth][MAXIMUM_MOVES]);
+    }
+
+    public long perft(int player, int depth) {
+        return perft(player, depth, true);
+    }
+
+    private long perft(int player, int depth, boolean bulk, int[][] buffers) {
+        int[] moves = buffers[depth-1];
+        int count = generateMoves(player, moves);
+        if(depth == 1 && bulk) {
+            return count;
         }
-        return;
+        long nodes = 0;
+        for(int i=0; i<count; i++) {
+            if(!bulk && !isValidMove(player, moves[i])) {
+                throw new IllegalStateException("generated invalid move " + unpackMove(moves[i]) + "\n" + this);
+            }
+            doMove(player, moves[i]);
+            nodes += depth == 1 ? 1 : perft(Math.abs(player-1), depth-1, bulk, buffers);
+            undoMove(player, moves[i]);
+        }
+        return nodes;
+    }
+
+    /**
+     *  divide prints, for each move of the player, the perft count of the position after it,
+     *  and returns their sum, perft(player, depth).  Comparing two move generators move by
+     *  move finds the position where they first differ.
+     */
+    public long divide(int player, int depth, PrintStream out) {
+        int[] moves = new int[MAXIMUM_MOVES];
+        int count = generateMoves(player, moves);
+        long total = 0;
+        for(int i=0; i<count; i++) {
+            doMove(player, moves[i]);
+            long nodes = perft(Math.abs(player-1), depth-1, true);
+            undoMove(player, moves[i]);
+            out.println(unpackMove(moves[i]) + " " + nodes);
+            total += nodes;
         }
+        out.println("total " + total);
+        return total;
+    }
 
     /** 
      *  Places Chip c at x, y of the board. It should be called by doMove()
@@ -1038,34 +584,146 @@ public class GameBoard {
      */
     public void placeChip(Chip c, int x, int y) {
         c.set(x, y);
-        board[y][x] = c;
+        board[y * DIMENSION + x] = c;
+        occupied[c.player()] |= squareBit(x, y);
+        hash ^= ZOBRIST[c.player()][y * DIMENSION + x];
+        forbidden[c.player()] = clusterSquares(occupied[c.player()]);
     }
 
     public int evaluate(int player, Move m) {
+    	return evaluate(player, packMove(m));
+    }
+
+    /**
+     *  evaluate for a move packed by packMove().
+     *
+     *  An ADD is scored from the position before it, which evaluate() keeps for as long as
+     *  it is asked about moves from there, as search asks about every sibling in turn.
+     *  When neither player has a network there, the new chip completes a network exactly
+     *  when its square is one of the player's threats(), and it cannot give the opponent a
+     *  network or a threat the opponent did not have already; it can only take them away.
+     *  So the ADD costs one threats() of the player and a findNetwork() for each old threat
+     *  of the opponent, instead of network checks on both sides and threats() on both sides.
+     *  A STEP also frees a square, so it is scored from scratch.
+     */
+    int evaluate(int player, int m) {
+    	if(--evaluateSamples > 0) {
+    		return evaluateMove(player, m);
+    	}
+    	return evaluateSampled(player, m);
+    }
+
+    /**
+     *  evaluate() for a call that is timed if its event is on.  Kept out of evaluate()
+     *  so that the calls that are not sampled stay small enough to inline.
+     */
+    private int evaluateSampled(int player, int m) {
+    	evaluateSamples = SAMPLE_INTERVAL;
+    	if(!FlightRecorder.isInitialized()) {
+    		return evaluateMove(player, m);
+    	}
+    	EvaluateEvent event = new EvaluateEvent();
+    	if(!event.isEnabled()) {
+    		return evaluateMove(player, m);
+    	}
+    	event.begin();
+    	int score = evaluateMove(player, m);
+    	event.player = player;
+    	event.result = score;
+    	event.commit();
+    	return score;
+    }
+
+    private int evaluateMove(int player, int m) {
     	//initializing the return variable
     	int score = 0;
-    	//copy Gameboard
-	    GameBoard gbNew = this.copy();
     	//initializing important fields
     	int opponent = Math.abs(player-1);
     	int chipsOnBoardPlayer = getChipList(player).getChipsLeft();
-    	int totalBlocks = GameBoard.DIMENSION * GameBoard.DIMENSION;//64 blocks
-    	//the move is performed; player or color seem to be the same
-    	gbNew.doMove(player, m);
-    	//check if there's a network, if either player wins return corresponding score
-    	if(gbNew.hasNetwork(player)) {
+    	int x1 = (m >>> 9) & 7;
+    	int y1 = (m >>> 6) & 7;
+    	//penalizing for chips next to each other, looked at before the move is made
+    	if(this.adjacentToChip(player, x1, y1)) {
+  			    score -= 10;
+    	}
+    	if((m >>> 12) == Move.ADD && loadParent(player)) {
+    		long bit = squareBit(x1, y1);
+    		if((parentThreats[player] & bit) != 0) {
     			return MAXIMUM_SCORE;
+    		}
+    		doMove(player, m);
+    		long opponentThreats = threatsAmong(opponent, parentThreats[opponent] & ~bit);
+    		score += evaluateMoved(player, opponent, chipsOnBoardPlayer,
+    		                       Long.bitCount(threats(player)), Long.bitCount(opponentThreats));
+    		undoMove(player, m);
+    		return score;
     	}
-    	if(gbNew.hasNetwork(opponent)) {
-    			return -MAXIMUM_SCORE;	
+    	//the move is performed on this board and taken back before returning
+    	doMove(player, m);
+    	//check if there's a network, if either player wins return corresponding score;
+    	//a move that completes both networks loses, as in winner()
+    	if(hasNetwork(opponent)) {
+    			score = -MAXIMUM_SCORE;
     	}
-    	//penalizing for chips next to each other
-    	if(this.adjacentToChip(player, m.x1, m.y1)) {
-  			    score -= 10;
-    	}    	
+    	else if(hasNetwork(player)) {
+    			score = MAXIMUM_SCORE;
+    	}
+    	else {
+    			score += evaluateMoved(player, opponent, chipsOnBoardPlayer,
+    			                       missingChips(player), missingChips(opponent));
+    	}
+    	undoMove(player, m);
+    	return score;
+  	}
+
+    /**
+     *  Helper function for evaluate().  Makes the current position, with the player to
+     *  move, the parent position whose threats evaluate() works from, computing them unless
+     *  it already is.  Returns false if either player has a network there, when the threats
+     *  say nothing about the moves.
+     */
+    private boolean loadParent(int player) {
+    	if(parentPlayer != player || parentOccupied[0] != occupied[0] || parentOccupied[1] != occupied[1]) {
+    		parentPlayer = player;
+    		parentOccupied[0] = occupied[0];
+    		parentOccupied[1] = occupied[1];
+    		parentNetwork = findNetwork(0, null) > 0 || findNetwork(1, null) > 0;
+    		if(!parentNetwork) {
+    			parentThreats[0] = threats(0);
+    			parentThreats[1] = threats(1);
+    		}
+    	}
+    	return !parentNetwork;
+    }
+
+    /**
+     *  Helper function for evaluate().  Returns the squares of the mask where one more chip
+     *  of the player would give the player a network.
+     */
+    private long threatsAmong(int player, long squares) {
+        long found = 0;
+        while (squares != 0) {
+            long bit = Long.lowestOneBit(squares);
+            squares ^= bit;
+            occupied[player] |= bit;
+            if (findNetwork(player, null) > 0) {
+                found |= bit;
+            }
+            occupied[player] &= ~bit;
+        }
+        return found;
+    }
+
+    /**
+     *  Helper function for evaluate(). Scores the board once the move is made and
+     *  neither player has a network, given how many chips each player is missing.
+     */
+    private int evaluateMoved(int player, int opponent, int chipsOnBoardPlayer,
+                              int neededChipsPlayer, int neededChipsOpponent) {
+    	int score = 0;
     	//initializing other important fields
-    	int chipsInStartPlayer = gbNew.chipsInStart(player);
-    	int chipsInGoalPlayer = gbNew.chipsInGoal(player);
+    	int chipsInStartPlayer = chipsInStart(player);
+    	int chipsInGoalPlayer = chipsInGoal(player);
     	
     	//Indeed rewarding a chip in start and goal
     	//makes the strategy try to put a chip there.
@@ -1082,51 +740,46 @@ public class GameBoard {
     			score -= 10;
     	}
     	//evaluate player's score and return score
-   		if(gbNew.missingChips(player) == gbNew.missingChips(opponent)){
+   		if(neededChipsPlayer == neededChipsOpponent){
     		score += chipsOnBoardPlayer;    
     	}else{
-      		score += gbNew.missingChips(player);
+      		score += neededChipsPlayer;
     	}
     	//initializing last variable to store the value of the score from strategy
-    	int strategyScore = gbNew.strategyInGame(player);
+    	int strategyScore = strategyInGame(player, neededChipsPlayer, neededChipsOpponent);
     	//here i add the strategy points to the score
     	score += strategyScore;
     	return score;
   	}
     
+    /**
+     *  Counts the player's chips on its starting edge, as inStart() has it, but off
+     *  row 0 and column 0.  The starting edge is row 0 or column 0, so this is always 0;
+     *  evaluate() has always scored it so and depends on that.
+     */
     public int chipsInStart(int player) {
-    	Chip chip = getChipList(player).front();
-    	int total = 0;
-    	while(chip.isValid()) {
-    		if(inStart(chip) && (chip.x()!=0 && chip.y()!=0)) {
-    			total++;
-    		} 
-    		chip = chip.next();
-    	}	
-    	return total;
+    	return Long.bitCount(occupied[player] & START_EDGE[player] & ~ROW_0 & ~COLUMN_0);
     }
 
     public int chipsInGoal(int player) {
-    	Chip chip = getChipList(player).front();
-    	int total = 0;
-    	while(chip.isValid()) {
-    		if(inGoal(chip)) {
-    			total++;
-    		} 
-    		chip = chip.next();
-    	}	
-    	return total;
+    	return Long.bitCount(occupied[player] & GOAL_AREA[player]);
     }
 
     public int strategyInGame(int player) {
+        return strategyInGame(player, missingChips(player), missingChips(Math.abs(player-1)));
+    }
+
+    /**
+     *  strategyInGame given how many chips each player is missing, so that evaluate()
+     *  works them out only once.
+     */
+    private int strategyInGame(int player, int neededChipsPlayer, int neededChipsOpponent) {
     //initializing return value
     int addToScore = 0;
     //initializing important fields
     int opponent = Math.abs(player-1);
     int chipsOnBoardPlayer = getChipList(player).getChipsLeft();
     int chipsOnBoardOpponent = getChipList(opponent).getChipsLeft();
-    int neededChipsPlayer = missingChips(player);
-    int neededChipsOpponent = missingChips(opponent);
     //int networkBlocksPlayer = this.networkBlocksAvailable(player);
     //int networkBlocksOpponent = this.networkBlocksAvailable(opponent);
     //checking if there is a winner, if THE GAME IS FINISHED
@@ -1268,22 +921,124 @@ public class GameBoard {
         return addToScore;
     }
 
+    /**
+     *  Returns the number of empty squares where one more chip of the player would give
+     *  the player a network.
+     */
      public int missingChips(int player) {
-        int count = 0;
-        Chip chip = new Chip(player, 0, 0, new ChipList());
-        GameBoard gb = this.copy();
-        for (int j = 0; j < DIMENSION; j++) {
-            for (int i = 0; i < DIMENSION; i++) {
-                if (!gb.hasChip(i, j)) {
-                    gb.placeChip(chip, i, j);
-                    if (gb.hasNetwork(player)) {
-                        count++;
-                    }
-                    gb.removeChip(i, j);
+        if (--missingChipsSamples > 0) {
+            return Long.bitCount(threats(player));
+        }
+        return missingChipsSampled(player);
+    }
+
+    private int missingChipsSampled(int player) {
+        missingChipsSamples = SAMPLE_INTERVAL;
+        if (!FlightRecorder.isInitialized()) {
+            return Long.bitCount(threats(player));
+        }
+        MissingChipsEvent event = new MissingChipsEvent();
+        if (!event.isEnabled()) {
+            return Long.bitCount(threats(player));
+        }
+        event.begin();
+        int missing = Long.bitCount(threats(player));
+        event.player = player;
+        event.result = missing;
+        event.commit();
+        return missing;
+    }
+
+    /**
+     *  Returns the mask of the empty squares where one more chip of the player would
+     *  give the player a network.
+     *
+     *  Without a network on the board, the new chip must be part of any network it
+     *  makes, because a new chip only takes away connections between other chips.
+     *  So one pass over the connection graph finds the chips that can be reached from
+     *  the start goal and the chips that can reach the other goal, and only an empty
+     *  square that sees one of each (or just one, on a goal) is tried with findNetwork().
+     */
+    long threats(int player) {
+        long own = occupied[player];
+        long empty = ~(occupied[0] | occupied[1]);
+        if (findNetwork(player, null) > 0) {
+            return threatsByTrial(player, empty);
+        }
+        if (Long.bitCount(own) < 5) {
+            return 0;
+        }
+        long startChips = own & START_AREA[player];
+        long goalChips = own & GOAL_AREA[player];
+        long fromStart = reachable(player, startChips, GOAL_AREA[player], START_EDGE[player]);
+        long toGoal = reachable(player, goalChips, START_EDGE[player], GOAL_AREA[player]);
+        long candidates = empty & ~(START_EDGE[player] & ~START_AREA[player]);
+        if (startChips == 0) {
+            candidates &= START_AREA[player];
+        }
+        if (goalChips == 0) {
+            candidates &= GOAL_AREA[player];
+        }
+        long found = 0;
+        while (candidates != 0) {
+            long bit = Long.lowestOneBit(candidates);
+            candidates ^= bit;
+            int square = Long.numberOfTrailingZeros(bit);
+            long seen = connections(square, player);
+            long before = seen & fromStart & ~GOAL_AREA[player];
+            long after = seen & toGoal & ~START_EDGE[player];
+            boolean possible;
+            if ((bit & START_AREA[player]) != 0) {
+                possible = after != 0;
+            } else if ((bit & GOAL_AREA[player]) != 0) {
+                possible = before != 0;
+            } else {
+                possible = before != 0 && after != 0 && (before != after || Long.bitCount(before) > 1);
+            }
+            if (possible) {
+                occupied[player] |= bit;
+                if (findNetwork(player, null) > 0) {
+                    found |= bit;
                 }
+                occupied[player] &= ~bit;
             }
         }
-        return count;
+        return found;
+    }
+
+    /**
+     *  Helper function for threats().  Returns the chips of the player joined to the seed
+     *  chips by connections, ignoring the rule about directions.  The search does not go
+     *  on from a chip in stopAt, and does not go into a chip in barred.
+     */
+    private long reachable(int player, long seeds, long stopAt, long barred) {
+        long found = seeds;
+        long frontier = seeds & ~stopAt;
+        while (frontier != 0) {
+            int square = Long.numberOfTrailingZeros(frontier);
+            frontier &= frontier - 1;
+            long next = connections(square, player) & ~found & ~barred;
+            found |= next;
+            frontier |= next & ~stopAt;
+        }
+        return found;
+    }
+
+    /**
+     *  Helper function for threats().  Tries a chip of the player on every empty square.
+     */
+    private long threatsByTrial(int player, long empty) {
+        long found = 0;
+        while (empty != 0) {
+            long bit = Long.lowestOneBit(empty);
+            empty ^= bit;
+            occupied[player] |= bit;
+            if (hasNetwork(player)) {
+                found |= bit;
+            }
+            occupied[player] &= ~bit;
+        }
+        return found;
     }
 
 
@@ -1293,22 +1048,40 @@ public class GameBoard {
      *  It calls the Chip's reset method so the Chip does not reference that spot anymore.
      */
     public void removeChip(int x, int y) {
-        if (hasChip(x, y)) {
-            board[y][x].reset();
-            board[y][x] = null;
+        int player = colorAt(x, y);
+        if (player >= 0) {
+            Chip c = board[y * DIMENSION + x];
+            if (c != null) {
+                c.reset();
+                board[y * DIMENSION + x] = null;
+            }
+            occupied[player] &= ~squareBit(x, y);
+            hash ^= ZOBRIST[player][y * DIMENSION + x];
+            forbidden[player] = clusterSquares(occupied[player]);
         }
     }
 
     /**
-     *  Returns the chip at coordinate (x, y) of the Gameboard.
-     *  If There is no Chip it returns null.
+     *  Returns the color of the chip at coordinate (x, y), or -1 if the square is empty.
      */
-    public Chip getChip(int x, int y) {
-        if (hasChip(x, y)) {
-            return board[y][x];
-        } else {
-            return null;
+    int colorAt(int x, int y) {
+        long bit = squareBit(x, y);
+        if ((occupied[0] & bit) != 0) {
+            return 0;
         }
+        if ((occupied[1] & bit) != 0) {
+            return 1;
+        }
+        return -1;
+    }
+
+    /**
+     *  Returns the Chip that placeChip() put at coordinate (x, y) of the Gameboard,
+     *  or null if the square is empty.  copy(GameBoard) copies only the occupancy,
+     *  so the squares it fills hold no Chip either.
+     */
+    public Chip getChip(int x, int y) {
+        return board[y * DIMENSION + x];
     }
 
 
@@ -1318,15 +1091,11 @@ public class GameBoard {
      */
 
     public void copy(GameBoard g) {
-        Chip c;
-        for (int j = 0; j < board.length; j++) {
-            for (int i = 0; i < board.length; i++) {
-                if (g.hasChip(i, j)) {
-                    c = (g.getChip(i, j)).copy();
-                    this.placeChip(c, i, j);
-                }
-            }
-        }
+        occupied[0] |= g.occupied[0];
+        occupied[1] |= g.occupied[1];
+        rehash();
+        forbidden[0] = clusterSquares(occupied[0]);
+        forbidden[1] = clusterSquares(occupied[1]);
     }
 
     public GameBoard copy() {
@@ -1350,10 +1119,6 @@ public class GameBoard {
 			player2chip = player2chip.next();
 		}
 		
-		if(player1.getChipsLeft()!=copy.player1.getChipsLeft() || player2.getChipsLeft()!=copy.player2.getChipsLeft()) {
-			System.out.println("FALSE");
-		}
-		
 		return copy;
     }
 
@@ -1366,21 +1131,11 @@ public class GameBoard {
      */
     public ChipList startGoal(int player) {
         ChipList lst = new ChipList();
-        Chip c;
-        if (player == 0) {
-            for (int i = 1; i < board.length - 1; i++) {
-                if (hasChip(i, 0)) {
-                    c = getChip(i, 0);
-                    lst.insertFront(c.copy());
-                }
-            }
-        } else {
-            for (int j = 1; j < board.length - 1; j++) {
-                if (hasChip(0, j)) {
-                    c = getChip(0, j);
-                    lst.insertFront(c.copy());
-                }
-            }
+        long start = occupied[player] & START_AREA[player];
+        while (start != 0) {
+            int square = Long.numberOfTrailingZeros(start);
+            start &= start - 1;
+            lst.insertFront(new Chip(player, square % DIMENSION, square / DIMENSION));
         }
         return lst;
     }
@@ -1390,14 +1145,7 @@ public class GameBoard {
      *  Returns whether a Chip is in the starting goal area or not.
      */
     public boolean inStart(Chip c) {
-        int x = c.x();
-        int y = c.y();
-        int player = c.player();
-        if (player == 0) {
-            return y == 0;
-        } else {
-            return x == 0;
-        }
+        return (START_EDGE[c.player()] & squareBit(c.x(), c.y())) != 0;
     }
 
     /**
@@ -1407,14 +1155,7 @@ public class GameBoard {
      * White is 1, and goals are W --> E ends of the board.
      */
     public boolean inGoal(Chip c) {
-        int x = c.x();
-        int y = c.y();
-        int player = c.player();
-        if (player == 0) {
-            return x != 0 && x != 7 && y == 7;
-        } else {
-            return x == 7 && y != 0 && y != 7;
-        }
+        return (GOAL_AREA[c.player()] & squareBit(c.x(), c.y())) != 0;
     }
 
     /**  
@@ -1431,116 +1172,54 @@ public class GameBoard {
      *
      */
     public ChipList findConnections(Chip c) {
-        Chip n;
         ChipList lst = new ChipList();
-        int x = c.x();
-        int y = c.y();
-        int player = c.player();
-        int x0 = x - 1;
-        int y0 = y - 1;
-        while (x0 > 0 && y0 > 0) {
-            if (hasChip(x0, y0)) {
-                if (getChip(x0, y0).player() == player) {
-                    n = getChip(x0, y0).copy();
-                    n.setDirection(1);
-                    lst.insertFront(n);
-                }
-                break;
-            }
-            x0--;
-            y0--;
-        }
-        int y1 = y - 1;
-        while (y1 >= 0) {
-            if (hasChip(x, y1)) {
-                if (getChip(x, y1).player() == player) {
-                    n = getChip(x, y1).copy();
-                    n.setDirection(2);
-                    lst.insertFront(n);
-                }
-                break;
-            }
-            y1--;
-        }
-        int x2 = x + 1;
-        int y2 = y - 1;
-        while (x2 < board.length && y2 >= 0) {
-            if (hasChip(x2, y2)) {
-                if (getChip(x2, y2).player() == player) {
-                    n = getChip(x2, y2).copy();
-                    n.setDirection(3);
-                    lst.insertFront(n);
-                }
-                break;
-            }
-            x2++;
-            y2--;
-        }
-        int x3 = x - 1;
-        while (x3 >= 0) {
-            if (hasChip(x3, y)) {
-                if (getChip(x3, y).player() == player) {
-                    n = getChip(x3, y).copy();
-                    n.setDirection(4);
-                    lst.insertFront(n);
-                }
-                break;
-            }
-            x3--;
-        }
-        int x4 = x + 1;
-        while (x4 < board.length) {
-            if (hasChip(x4, y)) {
-                if (getChip(x4, y).player() == player) {
-                    n = getChip(x4, y).copy();
-                    n.setDirection(5);
-                    lst.insertFront(n);
-                }
-                break;
-            }
-            x4++;
-        }
-        int x5 = x - 1;
-        int y5 = y + 1;
-        while (x5 >= 0 && y5 < board.length) {
-            if (hasChip(x5, y5)) {
-                if (getChip(x5, y5).player() == player) {
-                    n = getChip(x5, y5).copy();
-                    n.setDirection(6);
-                    lst.insertFront(n);
-                }
-                break;
+        int square = c.y() * DIMENSION + c.x();
+        long all = occupied[0] | occupied[1];
+        for (int direction = 1; direction <= 8; direction++) {
+            long n = nearestChip(direction, square, all) & occupied[c.player()];
+            if (n != 0) {
+                int to = Long.numberOfTrailingZeros(n);
+                Chip chip = new Chip(c.player(), to % DIMENSION, to / DIMENSION);
+                chip.setDirection(direction);
+                lst.insertFront(chip);
             }
-            x5--;
-            y5++;
         }
-        int y6 = y + 1;
-        while (y6 < board.length) {
-            if (hasChip(x, y6)) {
-                if (getChip(x, y6).player() == player) {
-                    n = getChip(x, y6).copy();
-                    n.setDirection(7);
-                    lst.insertFront(n);
-                }
-                break;
-            }
-            y6++;
+        return lst;
+    }
+
+    /**
+     *  Returns the mask of the chips of the given player that can be seen from a square,
+     *  at most one per direction.  It allocates nothing; the direction of each connection
+     *  is direction(square, to).
+     */
+    long connections(int square, int player) {
+        long all = occupied[0] | occupied[1];
+        long found = 0;
+        for (int direction = 1; direction <= 8; direction++) {
+            found |= nearestChip(direction, square, all);
         }
-        int x7 = x + 1;
-        int y7 = y + 1;
-        while (x7 < board.length && y7 < board.length) {
-            if (hasChip(x7, y7)) {
-                if (getChip(x7, y7).player() == player) {
-                    n = getChip(x7, y7).copy();
-                    n.setDirection(8);
-                    lst.insertFront(n);
-                }
-                break;
-            }
-            x7++;
-            y7++;
+        return found & occupied[player];
+    }
+
+    /**
+     *  Returns the bit of the first chip of the mask all along a ray, or 0 if there is none.
+     *  Directions 1-4 run towards lower squares and 5-8 towards higher ones, so the
+     *  nearest chip is the highest or the lowest bit of the ray.
+     */
+    private static long nearestChip(int direction, int square, long all) {
+        long blockers = RAYS[direction][square] & all;
+        if (direction <= 4) {
+            return Long.highestOneBit(blockers);
         }
-        return lst;
+        return Long.lowestOneBit(blockers);
+    }
+
+    /**
+     *  Returns the direction (1-8, numbered as for findConnections()) in which square to
+     *  lies from square from, or 0 if the two are not on a line.
+     */
+    static int direction(int from, int to) {
+        return DIRECTIONS[from * DIMENSION * DIMENSION + to];
     }
 
     /**
@@ -1548,74 +1227,112 @@ public class GameBoard {
      *  @param player is the player passed in.
      */ 
     public boolean hasNetwork(int player) {
-        return networkHelper(player, null, null);
+        if (--networkSamples > 0) {
+            return findNetwork(player, null) > 0;
+        }
+        return hasNetworkSampled(player);
+    }
+
+    private boolean hasNetworkSampled(int player) {
+        networkSamples = SAMPLE_INTERVAL;
+        if (!FlightRecorder.isInitialized()) {
+            return findNetwork(player, null) > 0;
+        }
+        HasNetworkEvent event = new HasNetworkEvent();
+        if (!event.isEnabled()) {
+            return findNetwork(player, null) > 0;
+        }
+        event.begin();
+        boolean found = findNetwork(player, null) > 0;
+        event.player = player;
+        event.result = found;
+        event.commit();
+        return found;
+    }
+
+    /**
+     *  Returns how many times this board has looked for a network, through hasNetwork()
+     *  or inside evaluate() and missingChips().  A board belongs to one thread, so the
+     *  count is a plain long.
+     */
+    long networkChecks() {
+        return networkChecks;
     }
 
     /**
-     *  Helper function for hasNetwork
+     *  Looks for a network of the player with a depth-first search that keeps its own
+     *  stack and allocates nothing.  A network starts on a chip in the player's start
+     *  goal, ends on a chip in the other goal, has at least 6 chips, never goes back
+     *  onto the starting edge, and never continues two connections in the same direction.
      *  @param player is the player passed in.
-     *  @param c is the chip it searches for a connection on.
-     *  @param count is the number of chips in the network built so far.
-     *  @param lst is the list of Chips in the network so far
+     *  @param path if it is not null and a network is found, receives the squares
+     *         (y * 8 + x) of the network from start to goal.  It needs room for as
+     *         many squares as the player has chips.
+     *  @return the number of chips in the network found, or 0 if there is none.
      */
- 
-     private boolean networkHelper(int player, Chip c, ChipList lst) {
-        boolean network = false;
-        if (c == null) {
-            ChipList strt = startGoal(player);
-            if (strt.isEmpty()) {
-                return false;
-            } else {
-                Chip curr = strt.front();
-                while (curr.isValid()) {
-                    ChipList current = new ChipList();
-                    network = networkHelper(player, curr, current);
-                    if (network == true) {
-                        return network;
-                    }
-                    curr = curr.next();
+    int findNetwork(int player, int[] path) {
+        networkChecks++;
+        long own = occupied[player];
+        if (Long.bitCount(own) < 6 || (own & START_AREA[player]) == 0 || (own & GOAL_AREA[player]) == 0) {
+            return 0;
+        }
+        long allowed = own & ~START_EDGE[player];
+        long starts = own & START_AREA[player];
+        while (starts != 0) {
+            int start = Long.numberOfTrailingZeros(starts);
+            starts &= starts - 1;
+            int top = 0;
+            long visited = 1L << start;
+            stackSquares[0] = start;
+            stackDirections[0] = 0;
+            stackCandidates[0] = connections(start, player) & allowed;
+            while (top >= 0) {
+                long candidates = stackCandidates[top];
+                if (candidates == 0) {
+                    visited &= ~(1L << stackSquares[top]);
+                    top--;
+                    continue;
                 }
-            }
-        } else {
-            if (inGoal(c)) {
-                if (lst.length() + 1 >= 6) {
-                    return true;
+                long next = Long.lowestOneBit(candidates);
+                stackCandidates[top] = candidates ^ next;
+                int square = Long.numberOfTrailingZeros(next);
+                int direction = direction(stackSquares[top], square);
+                if ((visited & next) != 0 || direction == stackDirections[top]) {
+                    continue;
                 }
-                return false;
-            }
-            ChipList connections = findConnections(c);
-            if (connections.isEmpty()) {
-                return false;
-            }
-            ChipList nwlst = lst.copy();
-            nwlst.insertFront(c.copy());
-            Chip cur = connections.front();
-            while (cur.isValid()) {
-                if (cur.direction() != c.direction() && !lst.inList(cur) && !inStart(cur)) {
-                    network = networkHelper(player, cur, nwlst);
-                    if (network == true) {
-                        return network;
+                if ((next & GOAL_AREA[player]) != 0) {
+                    if (top + 2 >= 6) {
+                        if (path != null) {
+                            System.arraycopy(stackSquares, 0, path, 0, top + 1);
+                            path[top + 1] = square;
+                        }
+                        return top + 2;
                     }
+                    continue;
                 }
-                cur = cur.next();
+                top++;
+                visited |= next;
+                stackSquares[top] = square;
+                stackDirections[top] = direction;
+                stackCandidates[top] = connections(square, player) & allowed;
             }
         }
-        return network;
+        return 0;
     }
 
 
     public String toString() {
         String divide = "\n" + "---------------------------------" + "\n";
         String s = "" + divide;
-        for (int j = 0; j < board.length; j++) {
+        for (int j = 0; j < DIMENSION; j++) {
             s = s + "|";
-            for (int i = 0; i < board.length; i++) {
+            for (int i = 0; i < DIMENSION; i++) {
                 if ((i == 0 && j == 0) || (i == 0 && j == 7) || (i == 7 && j == 0) || (i == 7 && j == 7)) {
                     s = s + " X |";
-                } else if (board[j][i] == null) {
+                } else if (!hasChip(i, j)) {
                     s = s + "   |";
                 } else {
-                    s = s + " " + board[j][i].player() + " |";
+                    s = s + " " + colorAt(i, j) + " |";
                 }
             }
             s = s + divide;
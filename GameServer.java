@@ -0,0 +1,391 @@
+/* GameServer.java */
+
+package player;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ *  Serves MachinePlayer games over TCP, any number of them on one selector thread.
+ *
+ *  A connection plays one game at a time.  The client sends requests and the server
+ *  answers each with a status byte, OK, ILLEGAL or ERROR, and, if it is OK, what the
+ *  request asks for.  Moves are packed into a big-endian short by GameBoard.packMove().
+ *
+ *    NEW_GAME       color depth  (two bytes)   starts a game against a MachinePlayer of
+ *                                              that color searching that deep
+ *    CHOOSE_MOVE                               answers with the player's move, a short
+ *    OPPONENT_MOVE  move                       Player.opponentMove()
+ *    FORCE_MOVE     move                       Player.forceMove()
+ *
+ *  A client sends a request only once the last one is answered.  Only CHOOSE_MOVE
+ *  searches; it runs on a fixed pool of worker threads, and the others are answered on
+ *  the selector thread.  Every game belongs to one worker, whose Searcher it shares with
+ *  the other games of that worker, so a connection costs a game board and a few bytes
+ *  of buffer, not a transposition table.  Since the games take turns with it, the
+ *  Searcher is shared (Searcher.setShared()): each search starts without killer moves
+ *  or history scores, and table entries age by generation only, not by the chips on
+ *  the board.  At most maximumPending searches are queued or running at once; the
+ *  CHOOSE_MOVE requests after that wait unread in their sockets, so TCP holds back the
+ *  clients that send them, until a search finishes.
+ *
+ *    java player.GameServer [port [workers [maximumPending [tableBits]]]]
+ *
+ *  LoadClient plays many games against a server and reports how long moves take.
+ */
+
+public class GameServer {
+
+  static final byte NEW_GAME = 1;
+  static final byte CHOOSE_MOVE = 2;
+  static final byte OPPONENT_MOVE = 3;
+  static final byte FORCE_MOVE = 4;
+
+  static final byte OK = 0;
+  static final byte ILLEGAL = 1;
+  static final byte ERROR = 2;
+
+  static final int DEFAULT_PORT = 7373;
+  static final int DEFAULT_TABLE_BITS = 16;
+
+  /**
+   * What the server knows about one connection.
+   **/
+
+  private static final class Connection {
+    final SocketChannel channel;
+    final int worker;
+    final ByteBuffer in = ByteBuffer.allocate(3);
+    final ByteBuffer out = ByteBuffer.allocate(3);
+    SelectionKey key;
+    MachinePlayer player;
+    boolean searching;
+    boolean stalled;
+    boolean closed;
+    int chosen;
+    boolean failed;
+
+    Connection(SocketChannel channel, int worker) {
+      this.channel = channel;
+      this.worker = worker;
+    }
+  }
+
+  private final Selector selector;
+  private final ServerSocketChannel server;
+  private final ExecutorService[] workers;
+  private final Searcher[] searchers;
+  private final int maximumPending;
+  private final ArrayDeque<Connection> stalled = new ArrayDeque<Connection>();
+  private final ConcurrentLinkedQueue<Connection> finished = new ConcurrentLinkedQueue<Connection>();
+  private int pending;
+  private int nextWorker;
+  private volatile boolean closing;
+
+  /**
+   * Creates a server listening on the port, or on any free port if it is 0, whose
+   * searches run on the given number of worker threads, each with a transposition
+   * table of 2^tableBits slots.
+   **/
+
+  public GameServer(int port, int workers, int maximumPending, int tableBits) throws IOException {
+    if(workers < 1 || maximumPending < 1) {
+      throw new IllegalArgumentException("workers and maximumPending must be at least 1");
+    }
+    this.maximumPending = maximumPending;
+    this.workers = new ExecutorService[workers];
+    searchers = new Searcher[workers];
+    for(int i=0; i<workers; i++) {
+      this.workers[i] = Executors.newSingleThreadExecutor();
+      searchers[i] = new Searcher(null, new TranspositionTable(tableBits));
+      searchers[i].setShared(true);
+    }
+    selector = Selector.open();
+    server = ServerSocketChannel.open();
+    server.bind(new InetSocketAddress(port), 1024);
+    server.configureBlocking(false);
+    server.register(selector, SelectionKey.OP_ACCEPT);
+  }
+
+  /**
+   * Returns the port the server listens on.
+   **/
+
+  public int port() {
+    return server.socket().getLocalPort();
+  }
+
+  /**
+   * run serves connections on this thread until close() is called.
+   **/
+
+  public void run() throws IOException {
+    try {
+      while(!closing) {
+        selector.select();
+        Connection done;
+        while((done = finished.poll()) != null) {
+          finish(done);
+        }
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while(keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if(!key.isValid()) {
+            continue;
+          }
+          if(key.isAcceptable()) {
+            accept();
+            continue;
+          }
+          Connection connection = (Connection) key.attachment();
+          try {
+            if(key.isWritable()) {
+              flush(connection);
+              serve(connection);
+            }
+            if(key.isValid() && key.isReadable()) {
+              if(connection.channel.read(connection.in) < 0) {
+                close(connection);
+              } else {
+                serve(connection);
+              }
+            }
+          } catch(IOException e) {
+            close(connection);
+          }
+        }
+      }
+    } finally {
+      for(SelectionKey key : selector.keys()) {
+        key.channel().close();
+      }
+      selector.close();
+      for(int i=0; i<workers.length; i++) {
+        workers[i].shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * close stops the server.  It may be called from any thread.
+   **/
+
+  public void close() {
+    closing = true;
+    selector.wakeup();
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel;
+    while((channel = server.accept()) != null) {
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      Connection connection = new Connection(channel, nextWorker);
+      nextWorker = (nextWorker + 1) % workers.length;
+      connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+  }
+
+  /**
+   * Returns the length of the request that starts with the given opcode, or -1 if
+   * there is no such request.
+   **/
+
+  static int requestLength(byte opcode) {
+    switch(opcode) {
+    case NEW_GAME:
+      return 3;
+    case CHOOSE_MOVE:
+      return 1;
+    case OPPONENT_MOVE:
+    case FORCE_MOVE:
+      return 3;
+    default:
+      return -1;
+    }
+  }
+
+  /**
+   * serve answers the requests the connection has sent, as long as it is not waiting
+   * for a search or for its last answer to be written.
+   **/
+
+  private void serve(Connection connection) throws IOException {
+    ByteBuffer in = connection.in;
+    while(!connection.closed && !connection.searching && !connection.stalled
+          && connection.out.position() == 0 && in.position() > 0) {
+      byte opcode = in.get(0);
+      int length = requestLength(opcode);
+      if(length < 0) {
+        close(connection);
+        return;
+      }
+      if(in.position() < length) {
+        break;
+      }
+      MachinePlayer player = connection.player;
+      switch(opcode) {
+      case NEW_GAME:
+        int color = in.get(1);
+        int depth = in.get(2);
+        if((color != 0 && color != 1) || depth < 1 || depth > Searcher.MAXIMUM_DEPTH) {
+          reply(connection, ERROR);
+        } else {
+          connection.player = new MachinePlayer(color, depth, searchers[connection.worker]);
+          reply(connection, OK);
+        }
+        break;
+      case CHOOSE_MOVE:
+        if(player == null) {
+          reply(connection, ERROR);
+        } else if(pending >= maximumPending) {
+          connection.stalled = true;
+          stalled.add(connection);
+          interest(connection);
+          return;
+        } else {
+          search(connection);
+        }
+        break;
+      default:
+        Move move = GameBoard.unpackMove(in.getShort(1) & 0xFFFF);
+        if(player == null) {
+          reply(connection, ERROR);
+        } else if(opcode == OPPONENT_MOVE ? player.opponentMove(move) : player.forceMove(move)) {
+          reply(connection, OK);
+        } else {
+          reply(connection, ILLEGAL);
+        }
+        break;
+      }
+      in.flip();
+      in.position(length);
+      in.compact();
+    }
+    interest(connection);
+  }
+
+  /**
+   * search hands the connection's player to its worker to choose a move.
+   **/
+
+  private void search(final Connection connection) {
+    pending++;
+    connection.searching = true;
+    workers[connection.worker].execute(new Runnable() {
+      public void run() {
+        try {
+          connection.chosen = GameBoard.packMove(connection.player.chooseMove());
+        } catch(RuntimeException e) {
+          connection.failed = true;
+        }
+        finished.add(connection);
+        selector.wakeup();
+      }
+    });
+  }
+
+  /**
+   * finish answers a CHOOSE_MOVE whose search is done, then lets stalled connections
+   * have the free places in the pool.
+   **/
+
+  private void finish(Connection connection) {
+    pending--;
+    connection.searching = false;
+    if(!connection.closed) {
+      try {
+        if(connection.failed) {
+          connection.failed = false;
+          reply(connection, ERROR);
+        } else {
+          connection.out.put(OK).putShort((short) connection.chosen);
+          flush(connection);
+        }
+        serve(connection);
+      } catch(IOException e) {
+        close(connection);
+      }
+    }
+    while(pending < maximumPending && !stalled.isEmpty()) {
+      Connection next = stalled.poll();
+      next.stalled = false;
+      if(!next.closed) {
+        try {
+          serve(next);
+        } catch(IOException e) {
+          close(next);
+        }
+      }
+    }
+  }
+
+  private void reply(Connection connection, byte status) throws IOException {
+    connection.out.put(status);
+    flush(connection);
+  }
+
+  /**
+   * flush writes what it can of the connection's answer.  Its next request is served
+   * once all of it is written.
+   **/
+
+  private void flush(Connection connection) throws IOException {
+    ByteBuffer out = connection.out;
+    out.flip();
+    connection.channel.write(out);
+    out.compact();
+    interest(connection);
+  }
+
+  /**
+   * interest reads from a connection only while it may send a request, and writes to it
+   * only while an answer is waiting to be written.
+   **/
+
+  private void interest(Connection connection) {
+    if(connection.closed) {
+      return;
+    }
+    int ops = 0;
+    if(!connection.searching && !connection.stalled) {
+      ops |= SelectionKey.OP_READ;
+    }
+    if(connection.out.position() > 0) {
+      ops |= SelectionKey.OP_WRITE;
+    }
+    connection.key.interestOps(ops);
+  }
+
+  private void close(Connection connection) {
+    connection.closed = true;
+    connection.key.cancel();
+    try {
+      connection.channel.close();
+    } catch(IOException e) {
+      // The connection is gone either way.
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    int maximumPending = args.length > 2 ? Integer.parseInt(args[2]) : 4 * workers;
+    int tableBits = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_TABLE_BITS;
+    GameServer server = new GameServer(port, workers, maximumPending, tableBits);
+    System.out.println("serving on port " + server.port() + " with " + workers + " workers");
+    server.run();
+  }
+
+}
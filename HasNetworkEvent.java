@@ -0,0 +1,32 @@
+/* HasNetworkEvent.java */
+
+package player;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ *  A Flight Recorder event timing one of every GameBoard.SAMPLE_INTERVAL calls to
+ *  GameBoard.hasNetwork() on a board.  Off unless the recording turns it on.
+ */
+
+@Name("player.HasNetwork")
+@Label("Has Network")
+@Description("Sampled duration of GameBoard.hasNetwork()")
+@Category({ "Network Engine", "Board" })
+@Enabled(false)
+@StackTrace(false)
+class HasNetworkEvent extends Event {
+
+  @Label("Player")
+  int player;
+
+  @Label("Network")
+  boolean result;
+
+}
@@ -0,0 +1,281 @@
+/* LoadClient.java */
+
+package player;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ *  Loads a GameServer with many games at once and reports how long it takes to answer
+ *  CHOOSE_MOVE.
+ *
+ *  Every connection plays games one after another, each against a server player of a
+ *  random color.  The client plays the other side with random valid moves, which it
+ *  sends as OPPONENT_MOVE.  A game ends with a network or after a number of plies.
+ *  All connections run on one selector thread, so the client can hold as many open as
+ *  the operating system allows.
+ *
+ *    java player.LoadClient [host [port [connections [games [depth [maxplies]]]]]]
+ *
+ *  The defaults are localhost, GameServer.DEFAULT_PORT, 1000 connections, 1 game per
+ *  connection, depth 2 and 60 plies.
+ */
+
+public class LoadClient {
+
+  private static final int CONNECTING = 0;
+  private static final int STARTING = 1;
+  private static final int CHOOSING = 2;
+  private static final int REPLYING = 3;
+
+  /**
+   * One connection and the game it is playing.
+   **/
+
+  private final class Game {
+    final SocketChannel channel;
+    final Random random;
+    final ByteBuffer in = ByteBuffer.allocate(3);
+    final ByteBuffer out = ByteBuffer.allocate(3);
+    final int[] moves = new int[GameBoard.MAXIMUM_MOVES];
+    SelectionKey key;
+    GameBoard board;
+    int state = CONNECTING;
+    int serverColor;
+    int toMove;
+    int plies;
+    int played;
+    int reply;
+    long sent;
+
+    Game(SocketChannel channel, long seed) {
+      this.channel = channel;
+      random = new Random(seed);
+    }
+  }
+
+  private final Selector selector;
+  private final int gamesPerConnection;
+  private final int depth;
+  private final int maximumPlies;
+  private long[] latencies = new long[1024];
+  private int moves;
+  private int games;
+  private int errors;
+  private int open;
+
+  LoadClient(InetSocketAddress address, int connections, int gamesPerConnection, int depth,
+             int maximumPlies) throws IOException {
+    this.gamesPerConnection = gamesPerConnection;
+    this.depth = depth;
+    this.maximumPlies = maximumPlies;
+    selector = Selector.open();
+    for(int i=0; i<connections; i++) {
+      SocketChannel channel = SocketChannel.open();
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      Game game = new Game(channel, i + 1);
+      if(channel.connect(address)) {
+        game.key = channel.register(selector, 0, game);
+        start(game);
+      } else {
+        game.key = channel.register(selector, SelectionKey.OP_CONNECT, game);
+      }
+      open++;
+    }
+  }
+
+  /**
+   * run plays until every connection has played its games.
+   **/
+
+  void run() throws IOException {
+    while(open > 0) {
+      selector.select();
+      Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+      while(keys.hasNext()) {
+        SelectionKey key = keys.next();
+        keys.remove();
+        Game game = (Game) key.attachment();
+        try {
+          if(key.isConnectable()) {
+            if(game.channel.finishConnect()) {
+              start(game);
+            }
+          } else if(key.isWritable()) {
+            flush(game);
+          } else if(key.isReadable()) {
+            if(game.channel.read(game.in) < 0) {
+              throw new IOException("server closed the connection");
+            }
+            // An answer that is not OK is its status byte alone.
+            if(game.in.position() == game.reply
+               || (game.in.position() >= 1 && game.in.get(0) != GameServer.OK)) {
+              answered(game);
+            }
+          }
+        } catch(IOException e) {
+          errors++;
+          close(game);
+        }
+      }
+    }
+  }
+
+  /**
+   * start starts a new game on the connection.
+   **/
+
+  private void start(Game game) throws IOException {
+    game.board = GameBoard.newBoard();
+    game.serverColor = game.random.nextInt(2);
+    game.toMove = 1;
+    game.plies = 0;
+    game.state = STARTING;
+    send(game, 1, GameServer.NEW_GAME, (byte) game.serverColor, (byte) depth);
+  }
+
+  /**
+   * answered goes on with the game once the server has answered.
+   **/
+
+  private void answered(Game game) throws IOException {
+    ByteBuffer in = game.in;
+    byte status = in.get(0);
+    if(status != GameServer.OK) {
+      throw new IOException("server answered " + status);
+    }
+    if(game.state == CHOOSING) {
+      record(System.nanoTime() - game.sent);
+      int move = in.getShort(1) & 0xFFFF;
+      if(move == Searcher.NO_MOVE || !game.board.isValidMove(game.serverColor, move)) {
+        throw new IOException("server chose an invalid move");
+      }
+      game.board.doMove(game.serverColor, move);
+      moved(game);
+    } else if(game.state == REPLYING) {
+      moved(game);
+    }
+    in.clear();
+    next(game);
+  }
+
+  private void moved(Game game) {
+    game.toMove = 1 - game.toMove;
+    game.plies++;
+  }
+
+  /**
+   * next sends the next request of the game, or starts the next game once it is over.
+   **/
+
+  private void next(Game game) throws IOException {
+    GameBoard board = game.board;
+    int count = 0;
+    if(game.plies < maximumPlies && !board.hasNetwork(0) && !board.hasNetwork(1)) {
+      count = board.generateMoves(game.toMove, game.moves);
+    }
+    if(count == 0) {
+      games++;
+      if(++game.played < gamesPerConnection) {
+        start(game);
+      } else {
+        close(game);
+      }
+    } else if(game.toMove == game.serverColor) {
+      game.state = CHOOSING;
+      game.sent = System.nanoTime();
+      send(game, 3, GameServer.CHOOSE_MOVE);
+    } else {
+      int move = game.moves[game.random.nextInt(count)];
+      board.doMove(game.toMove, move);
+      game.state = REPLYING;
+      send(game, 1, GameServer.OPPONENT_MOVE, (byte) (move >>> 8), (byte) move);
+    }
+  }
+
+  private void send(Game game, int reply, byte... request) throws IOException {
+    game.reply = reply;
+    game.out.clear();
+    game.out.put(request);
+    game.out.flip();
+    flush(game);
+  }
+
+  private void flush(Game game) throws IOException {
+    game.channel.write(game.out);
+    game.key.interestOps(game.out.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+  }
+
+  private void close(Game game) {
+    open--;
+    game.key.cancel();
+    try {
+      game.channel.close();
+    } catch(IOException e) {
+      // Nothing more to play on it either way.
+    }
+  }
+
+  private void record(long nanos) {
+    if(moves == latencies.length) {
+      latencies = Arrays.copyOf(latencies, 2 * moves);
+    }
+    latencies[moves++] = nanos;
+  }
+
+  int games() {
+    return games;
+  }
+
+  int moves() {
+    return moves;
+  }
+
+  int errors() {
+    return errors;
+  }
+
+  /**
+   * Returns the given percentile of the recorded CHOOSE_MOVE latencies in milliseconds.
+   **/
+
+  private static double percentile(long[] sorted, int count, double p) {
+    if(count == 0) {
+      return 0;
+    }
+    int index = (int) Math.ceil(p / 100 * count) - 1;
+    return sorted[Math.max(0, Math.min(count - 1, index))] / 1e6;
+  }
+
+  public static void main(String[] args) throws IOException {
+    String host = args.length > 0 ? args[0] : "localhost";
+    int port = args.length > 1 ? Integer.parseInt(args[1]) : GameServer.DEFAULT_PORT;
+    int connections = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+    int gamesPerConnection = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+    int depth = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+    int maximumPlies = args.length > 5 ? Integer.parseInt(args[5]) : 60;
+    long start = System.nanoTime();
+    LoadClient client = new LoadClient(new InetSocketAddress(host, port), connections,
+                                       gamesPerConnection, depth, maximumPlies);
+    client.run();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long[] sorted = Arrays.copyOf(client.latencies, client.moves);
+    Arrays.sort(sorted);
+    System.out.println(client.games + " games, " + client.moves + " server moves, "
+                       + client.errors + " errors in " + String.format("%.1f", seconds) + "s, "
+                       + Math.round(client.moves / seconds) + " moves/s");
+    System.out.println(String.format("move latency p50 %.2fms p99 %.2fms max %.2fms",
+                                     percentile(sorted, client.moves, 50),
+                                     percentile(sorted, client.moves, 99),
+                                     percentile(sorted, client.moves, 100)));
+  }
+
+}
@@ -2,6 +2,15 @@
 
 package player;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import jdk.jfr.FlightRecorder;
 import player.list.*;
 
 
@@ -9,22 +18,59 @@ import player.list.*;
 /**
  *  An implementation of an automatic Network player.  Keeps track of moves
  *  made by both players.  Can select a move for itself.
+ *
+ *  A player searching on more than one thread owns a pool of threads, which
+ *  close() shuts down.  Call close() once the player is no longer needed.
  */
 
-public class MachinePlayer extends Player {
+public class MachinePlayer extends Player implements AutoCloseable {
 
   public static final int NUM_CHIPS = 10;
+  public static final int SPLIT_ROOT = 0;
+  public static final int LAZY_SMP = 1;
+  private static final int PONDER_MOVES = 4;
   private GameBoard gameBoard;
   private int color;
   private int searchDepth;
   private ChipList myChips;
   private ChipList opponentChips;
+  private Searcher searcher;
+  private Searcher[] helpers;
+  private ForkJoinPool pool;
+  private int threads;
+  private int parallelMode;
+  private int[] rootMoves;
+  private long nodes;
+  private long perMoveNanos;
+  private int completedDepth;
+  private SearchStats stats;
+  private SearchStats.Listener listener;
+  private OpeningBook book;
+  private boolean pondering;
+  private Searcher ponderer;
+  private Thread ponderThread;
+  private int predictedReply;
+  private long ponderKey;
+  private int ponderMove;
+  private int ponderDepth;
+  private int ponderScore;
 
   // Creates a machine player with the given color.  Color is either 0 (black)
   // or 1 (white).  (White has the first move.)
   public MachinePlayer(int color) {
+    this(color, 2, null);
+  }
+
+  // Creates a machine player with the given color and search depth that searches
+  // with the given Searcher, or with one of its own if searcher is null.  Players
+  // may share a Searcher, and with it its transposition table, as long as no two of
+  // them search at the same time, which GameServer ensures by giving every game
+  // served by one thread that thread's Searcher.  Such a Searcher must be marked
+  // with setShared(true).
+  MachinePlayer(int color, int searchDepth, Searcher searcher) {
     this.color = color;
-    searchDepth = 2;
+    this.searchDepth = searchDepth;
+    threads = 1;
     myChips = new ChipList(color);
     opponentChips = new ChipList(Math.abs(color-1));
     for(int i=0; i<NUM_CHIPS; i++) {
@@ -32,6 +78,7 @@ public class MachinePlayer extends Player {
       opponentChips.insertBack(new Chip(Math.abs(color-1), 0, 0, opponentChips));
     }
     gameBoard = new GameBoard(myChips, opponentChips);
+    this.searcher = searcher != null ? searcher : new Searcher(gameBoard, new TranspositionTable());
   }
 
   
@@ -43,55 +90,484 @@ public class MachinePlayer extends Player {
     this.searchDepth = searchDepth;
   }
 
+  // Creates a machine player with the given color that searches each move for
+  // at most the given time.  It deepens one ply at a time and plays the best move
+  // of the deepest search that finished.  The one-ply search always finishes, even
+  // if it takes longer than perMove.
+  public MachinePlayer(int color, Duration perMove) {
+    this(color);
+    this.searchDepth = Searcher.MAXIMUM_DEPTH;
+    this.perMoveNanos = Math.max(1, perMove.toNanos());
+  }
+
+  /**
+   * setThreads sets how many threads search each move, sharing the moves at the
+   * root out over them as setThreads(threads, SPLIT_ROOT) does.
+   **/
+
+  public void setThreads(int threads) {
+    setThreads(threads, SPLIT_ROOT);
+  }
+
+  /**
+   * setThreads sets how many threads search each move and how they share the work.
+   * With SPLIT_ROOT, the moves at the root are shared out over a ForkJoinPool of that
+   * many threads.  With LAZY_SMP, this thread searches as it would alone while
+   * threads-1 helpers search the same root, every other one a ply deeper, and fill in
+   * the transposition table ahead of it.  Either way each helper searches its own copy
+   * of the board, and all of them share one lock-free transposition table.  The
+   * helpers' threads live until close() is called.
+   **/
+
+  public void setThreads(int threads, int mode) {
+    if(threads < 1) {
+      throw new IllegalArgumentException("threads must be at least 1");
+    }
+    if(mode != SPLIT_ROOT && mode != LAZY_SMP) {
+      throw new IllegalArgumentException("unknown parallel mode " + mode);
+    }
+    if(pool != null) {
+      pool.shutdown();
+      pool = null;
+    }
+    this.threads = threads;
+    parallelMode = mode;
+    helpers = null;
+    if(threads > 1) {
+      int count = mode == LAZY_SMP ? threads - 1 : threads;
+      pool = new ForkJoinPool(count);
+      helpers = new Searcher[count];
+      for(int i=0; i<count; i++) {
+        helpers[i] = new Searcher(null, searcher.table());
+      }
+      rootMoves = new int[GameBoard.MAXIMUM_MOVES];
+    }
+  }
+
+  /**
+   * Returns how many threads search each move.
+   **/
+
+  int threads() {
+    return threads;
+  }
+
+  /**
+   * close shuts down the threads the player searches with, other than the one that
+   * calls chooseMove().  It must be called when the player is done with, or those
+   * threads are never released.  It also stops pondering.  A closed player may still
+   * be used, and searches on one thread without pondering.
+   **/
+
+  public void close() {
+    setPondering(false);
+    if(pool != null) {
+      pool.shutdown();
+      pool = null;
+    }
+    threads = 1;
+    helpers = null;
+  }
+
   // Returns a new move by "this" player.  Internally records the move (updates
   // the internal game board) as a move by "this" player.
   public Move chooseMove() {
-    MoveListNode bestMove = minimax(gameBoard, color, searchDepth, -GameBoard.MAXIMUM_SCORE);
-    Move theMove = bestMove.getMove();
+    ChooseMoveEvent event = null;
+    if(FlightRecorder.isInitialized()) {
+      event = new ChooseMoveEvent();
+      event.begin();
+    }
+    long start = System.nanoTime();
+    stopPondering();
+    boolean ponderHit = ponderDepth > 0 && ponderKey == gameBoard.hash(color)
+        && gameBoard.isValidMove(color, ponderMove);
+    if(!ponderHit) {
+      ponderDepth = 0;
+    }
+    int bestMove = book == null ? Searcher.NO_MOVE : book.lookup(gameBoard, color);
+    boolean fromBook = bestMove != Searcher.NO_MOVE;
+    if(fromBook) {
+      completedDepth = 0;
+    } else if(ponderHit && ponderDepth >= searchDepth) {
+      startSearch(Long.MAX_VALUE);
+      bestMove = ponderMove;
+      completedDepth = ponderDepth;
+    } else if(perMoveNanos == 0) {
+      startSearch(Long.MAX_VALUE);
+      bestMove = searchRoot(searchDepth);
+      completedDepth = searchDepth;
+    } else {
+      bestMove = deepen();
+    }
+    Move theMove = GameBoard.unpackMove(bestMove);
+    stats = new SearchStats();
+    if(!fromBook) {
+      stats.add(searcher);
+      if(helpers != null) {
+        for(int i=0; i<helpers.length; i++) {
+          stats.add(helpers[i]);
+        }
+      }
+      stats.score = searcher.rootScore();
+      if(ponderHit) {
+        stats.add(ponderer);
+        if(completedDepth == ponderDepth) {
+          stats.score = ponderScore;
+        }
+      }
+    }
+    stats.bookMove = fromBook;
+    stats.ponderHit = ponderHit && !fromBook;
+    ponderDepth = 0;
+    stats.completedDepth = completedDepth;
+    stats.move = theMove;
+    nodes = stats.nodes;
     gameBoard.doMove(color, theMove);
+    stats.elapsedNanos = System.nanoTime() - start;
+    if(event != null && event.shouldCommit()) {
+      event.color = color;
+      event.depth = completedDepth;
+      event.nodes = stats.nodes;
+      event.score = stats.score;
+      event.move = theMove.toString();
+      event.commit();
+    }
+    if(listener != null) {
+      listener.moveChosen(stats);
+    }
+    if(pondering) {
+      startPondering();
+    }
     return theMove;
   } 
 
   /**
-   * Need a GameBoard.getChips(int player)
-   * Need a Chips.getChipsLeft()  
-   * Need a Chips.selectChip(int i)
-   * Need a GameBoard.removeChip(Chip c)
-   * Need a GameBoard.MAXIMUM_SCORE
-   * Need a GameBoard.validMoves(int player)
-   * 
+   * setPondering turns pondering on or off.  A pondering player, once chooseMove()
+   * has made its move, guesses the opponent's reply from the transposition table and
+   * searches the position after it on a thread of its own until the opponent moves.
+   * If opponentMove() brings the reply it guessed, the search goes on until the next
+   * chooseMove(), which starts from the deepest search it finished, and plays its move
+   * at once if that search was as deep as it would search itself.  Any other move
+   * cancels the search.  What it stored in the transposition table is kept either way.
+   * Pondering never searches deeper than the player does, and a player with a time
+   * limit ponders for at most PONDER_MOVES times its time per move, so a player that
+   * is dropped in the middle of a game does not search on for ever.  close() stops it.
+   **/
+
+  public void setPondering(boolean pondering) {
+    this.pondering = pondering;
+    if(!pondering) {
+      stopPondering();
+      ponderDepth = 0;
+    }
+  }
+
+  /**
+   * startPondering starts a search of the position after the opponent's likeliest
+   * reply, the move the transposition table holds for the opponent now, if it holds
+   * one and nobody has won.
    **/
 
-  private MoveListNode minimax( GameBoard gb, int player, int depth, int beta) {
-    MoveList possibleMoves = gb.validMoves(player);	
-    if(possibleMoves.front().getMove().moveKind == Move.STEP) {
-      depth = depth-1;
+  private void startPondering() {
+    int opponent = Math.abs(color-1);
+    if(gameBoard.hasNetwork(color) || gameBoard.hasNetwork(opponent)) {
+      return;
+    }
+    long entry = searcher.table().probe(gameBoard.hash(opponent));
+    if(entry == 0 || !gameBoard.isValidMove(opponent, TranspositionTable.move(entry))) {
+      return;
+    }
+    predictedReply = TranspositionTable.move(entry);
+    final GameBoard board = gameBoard.copy();
+    board.doMove(opponent, predictedReply);
+    if(board.hasNetwork(color) || board.hasNetwork(opponent)) {
+      return;
+    }
+    if(ponderer == null) {
+      ponderer = new Searcher(null, searcher.table());
     }
-    MoveListNode possibleMove;
-    MoveListIterator listIter = possibleMoves.iterator();
-    while(listIter.hasNext()) {
-      possibleMove = listIter.next();
-      possibleMove.setScore(gb.evaluate(player, possibleMove.getMove()));
-      if(possibleMove.getScore() == GameBoard.MAXIMUM_SCORE || possibleMove.getScore()>=(-beta)) {
-        return possibleMove;
+    ponderer.start(board, perMoveNanos == 0 ? Long.MAX_VALUE
+                   : System.nanoTime() + PONDER_MOVES * perMoveNanos);
+    ponderKey = board.hash(color);
+    ponderDepth = 0;
+    final int limit = searchDepth;
+    ponderThread = new Thread(new Runnable() {
+      public void run() {
+        for(int depth = 1; depth <= limit; depth++) {
+          int move = ponderer.searchRoot(color, depth);
+          if(ponderer.stopped() || move == Searcher.NO_MOVE) {
+            break;
+          }
+          ponderMove = move;
+          ponderDepth = depth;
+          ponderScore = ponderer.rootScore();
+          if(Math.abs(ponderScore) > Searcher.WIN_THRESHOLD) {
+            break;
+          }
+        }
       }
+    }, "ponder-" + color);
+    ponderThread.setDaemon(true);
+    ponderThread.start();
+  }
+
+  /**
+   * stopPondering aborts the pondering search, if one is running, and waits for its
+   * thread to finish, so that what it found may be read.
+   **/
+
+  private void stopPondering() {
+    if(ponderThread == null) {
+      return;
     }
-    if(depth <= 1) {	
-	    return possibleMoves.topScore();
-    }
-    else {
-	    int maxScore = -GameBoard.MAXIMUM_SCORE;
-      listIter = possibleMoves.iterator();
-      while(listIter.hasNext()) {
-        possibleMove = listIter.next();
-        maxScore = Math.max(maxScore, possibleMove.getScore());
-        GameBoard gbNew = gb.copy();
-        gbNew.doMove(player, possibleMove.getMove());
-        possibleMove.setScore(-((minimax(gbNew, Math.abs(player-1), depth-1, maxScore).getScore())-5));
+    ponderer.abort();
+    boolean interrupted = false;
+    while(ponderThread.isAlive()) {
+      try {
+        ponderThread.join();
+      } catch(InterruptedException e) {
+        interrupted = true;
       }
     }
-	  possibleMove = possibleMoves.topScore();
-    return possibleMove;
+    if(interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    ponderThread = null;
+  }
+
+  /**
+   * setOpeningBook sets a book for chooseMove() to play from, or, given null, removes
+   * it.  A position in the book is played without searching.
+   **/
+
+  public void setOpeningBook(OpeningBook book) {
+    this.book = book;
+  }
+
+  /**
+   * Returns what the last call to chooseMove() did, or null before the first call.
+   **/
+
+  public SearchStats getSearchStats() {
+    return stats;
+  }
+
+  /**
+   * setSearchListener sets a listener to hear about every move chooseMove() chooses,
+   * or, given null, removes it.
+   **/
+
+  public void setSearchListener(SearchStats.Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Returns the number of positions visited during the last call to chooseMove(),
+   * by all threads together.
+   **/
+
+  public long getNodeCount() {
+    return nodes;
+  }
+
+  /**
+   * Returns the depth of the deepest search that finished during the last call to chooseMove().
+   **/
+
+  public int getCompletedDepth() {
+    return completedDepth;
+  }
+
+  /**
+   * startSearch readies the searchers for a new move and starts a new generation of
+   * the transposition table, whose entries from earlier moves are kept.  Each helper
+   * gets its own copy of the board.  A shared Searcher's table is told of no chips,
+   * since the other games sharing it may have fewer on their boards.
+   **/
+
+  private void startSearch(long deadline) {
+    int chips = Long.bitCount(gameBoard.chips(0) | gameBoard.chips(1));
+    searcher.table().newSearch(searcher.isShared() ? 0 : chips);
+    searcher.start(gameBoard, deadline);
+    if(helpers != null) {
+      for(int i=0; i<helpers.length; i++) {
+        helpers[i].start(gameBoard.copy(), deadline);
+      }
+    }
+  }
+
+  private void setDeadline(long deadline) {
+    searcher.setDeadline(deadline);
+    if(helpers != null) {
+      for(int i=0; i<helpers.length; i++) {
+        helpers[i].setDeadline(deadline);
+      }
+    }
+  }
+
+  /**
+   * deepen searches one ply deeper at a time until the time for this move runs out,
+   * and returns the best move of the last search that finished.  Each search starts
+   * from the move the one before it found, which the transposition table puts first.
+   **/
+
+  private int deepen() {
+    long start = System.nanoTime();
+    startSearch(Long.MAX_VALUE);
+    int bestMove;
+    if(ponderDepth > 0) {
+      bestMove = ponderMove;
+      completedDepth = ponderDepth;
+      if(Math.abs(ponderScore) > Searcher.WIN_THRESHOLD) {
+        return bestMove;
+      }
+    } else {
+      bestMove = searchRoot(1);
+      completedDepth = 1;
+    }
+    long deadline = start + perMoveNanos;
+    setDeadline(deadline);
+    for(int depth = completedDepth + 1; depth <= searchDepth && System.nanoTime() < deadline; depth++) {
+      int move = searchRoot(depth);
+      if(move == Searcher.NO_MOVE) {
+        break;
+      }
+      bestMove = move;
+      completedDepth = depth;
+      if(Math.abs(searcher.rootScore()) > Searcher.WIN_THRESHOLD) {
+        break;
+      }
+    }
+    return bestMove;
+  }
+
+  /**
+   * searchRoot returns the best move found searching depth plies deep, or
+   * Searcher.NO_MOVE if the search ran out of time or the player has no moves.
+   **/
+
+  private int searchRoot(int depth) {
+    int bestMove;
+    if(helpers == null) {
+      bestMove = searcher.searchRoot(color, depth);
+    } else if(parallelMode == LAZY_SMP) {
+      bestMove = lazyRoot(depth);
+    } else {
+      bestMove = splitRoot(depth);
+    }
+    if(searcher.stopped()) {
+      return Searcher.NO_MOVE;
+    }
+    return bestMove;
+  }
+
+  /**
+   * splitRoot searches the first root move on this thread to get a bound, then shares
+   * the other root moves out over the pool.  Each helper takes the next unsearched move
+   * and searches it against the best score found so far by any thread, so later moves
+   * get cut off sooner.  A move whose score beats the bound it was searched with has an
+   * exact score; the best of those is played, ties going to the move that comes first.
+   **/
+
+  private int splitRoot(final int depth) {
+    final int[] moves = rootMoves;
+    final int count = searcher.rootMoves(color, moves);
+    if(count == 0) {
+      return Searcher.NO_MOVE;
+    }
+    final int[] scores = new int[count];
+    final boolean[] exact = new boolean[count];
+    scores[0] = searcher.scoreRootMove(color, moves[0], depth, -Searcher.INFINITY);
+    exact[0] = true;
+    if(searcher.stopped()) {
+      return Searcher.NO_MOVE;
+    }
+    final AtomicInteger bound = new AtomicInteger(scores[0]);
+    final AtomicInteger next = new AtomicInteger(1);
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for(int t=0; t<helpers.length; t++) {
+      final Searcher helper = helpers[t];
+      tasks.add(new Callable<Void>() {
+        public Void call() {
+          int i;
+          while((i = next.getAndIncrement()) < count && !helper.stopped()) {
+            int alpha = bound.get();
+            int score = helper.scoreRootMove(color, moves[i], depth, alpha);
+            if(helper.stopped()) {
+              break;
+            }
+            scores[i] = score;
+            exact[i] = score > alpha;
+            while(score > alpha && !bound.compareAndSet(alpha, score)) {
+              alpha = bound.get();
+            }
+          }
+          return null;
+        }
+      });
+    }
+    pool.invokeAll(tasks);
+    int best = 0;
+    for(int t=0; t<helpers.length; t++) {
+      if(helpers[t].stopped()) {
+        return Searcher.NO_MOVE;
+      }
+    }
+    for(int i=1; i<count; i++) {
+      if(exact[i] && scores[i] > scores[best]) {
+        best = i;
+      }
+    }
+    searcher.storeRoot(color, depth, moves[best], scores[best]);
+    return moves[best];
+  }
+
+  /**
+   * lazyRoot starts the helpers on the same root, odd ones a ply deeper than the
+   * others, and searches it on this thread at the given depth.  The helpers share
+   * nothing with this thread but the transposition table; what they store there
+   * cuts off and orders this thread's search.  When this thread finishes, the helpers
+   * are aborted and their unfinished searches thrown away.  The move played is always
+   * the one this thread found.
+   **/
+
+  private int lazyRoot(final int depth) {
+    List<Future<Integer>> running = new ArrayList<Future<Integer>>();
+    for(int t=0; t<helpers.length; t++) {
+      final Searcher helper = helpers[t];
+      final int helperDepth = Math.min(depth + (t & 1), Searcher.MAXIMUM_DEPTH);
+      helper.resume();
+      running.add(pool.submit(new Callable<Integer>() {
+        public Integer call() {
+          return helper.searchRoot(color, helperDepth);
+        }
+      }));
+    }
+    int bestMove = searcher.searchRoot(color, depth);
+    for(int t=0; t<helpers.length; t++) {
+      helpers[t].abort();
+    }
+    for(int t=0; t<running.size(); t++) {
+      try {
+        running.get(t).get();
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch(ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      }
+    }
+    return bestMove;
+  }
+
+  /**
+   * solve proves whether this player, to move in the position set up with forceMove()
+   * and opponentMove(), can force a network within plies plies, or must lose within
+   * them, expanding at most maximumNodes positions.  It searches a copy of the board,
+   * so it changes nothing.
+   **/
+
+  public Solver.Result solve(int plies, long maximumNodes) {
+    return new Solver(gameBoard.copy(), plies, maximumNodes, Solver.DEFAULT_BITS).solve(color);
   }
 
 // If the Move m is legal, records the move as a move by the opponent
@@ -101,6 +577,10 @@ public class MachinePlayer extends Player {
 
   public boolean opponentMove(Move m) {
     if(gameBoard.isValidMove(Math.abs(color-1), m)) {
+      if(ponderThread != null && GameBoard.packMove(m) != predictedReply) {
+        stopPondering();
+        ponderDepth = 0;
+      }
       gameBoard.doMove(Math.abs(color-1), m);
       return true;
     }
@@ -114,10 +594,23 @@ public class MachinePlayer extends Player {
   // player to solve.
   public boolean forceMove(Move m) {
     if(gameBoard.isValidMove(color, m)) {
+      stopPondering();
+      ponderDepth = 0;
       gameBoard.doMove(color, m);
       return true;
     }
     return false;
   }
 
+  /**
+   * undoMove takes back m, the last move this player made with chooseMove() or
+   * forceMove(), so that a benchmark can search the same position again.
+   **/
+
+  void undoMove(Move m) {
+    stopPondering();
+    ponderDepth = 0;
+    gameBoard.undoMove(color, m);
+  }
+
 }
@@ -0,0 +1,32 @@
+/* MissingChipsEvent.java */
+
+package player;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ *  A Flight Recorder event timing one of every GameBoard.SAMPLE_INTERVAL calls to
+ *  GameBoard.missingChips() on a board.  Off unless the recording turns it on.
+ */
+
+@Name("player.MissingChips")
+@Label("Missing Chips")
+@Description("Sampled duration of GameBoard.missingChips()")
+@Category({ "Network Engine", "Board" })
+@Enabled(false)
+@StackTrace(false)
+class MissingChipsEvent extends Event {
+
+  @Label("Player")
+  int player;
+
+  @Label("Missing Chips")
+  int result;
+
+}
@@ -0,0 +1,200 @@
+/* OpeningBook.java */
+
+package player;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *  A book of opening moves, read from a file through a MappedByteBuffer.
+ *
+ *  The file starts with an 8-byte header, the int MAGIC and the int number of
+ *  entries, followed by the entries sorted by key.  An entry is 12 bytes: the long
+ *  key of a position, GameBoard.hash(player) with the player to move, and the int
+ *  move to play there, packed by GameBoard.packMove().  All numbers are big-endian.
+ *
+ *  lookup() binary searches the mapped file, so it takes microseconds and the book
+ *  takes no heap however big it is.  A book may be shared by any number of players
+ *  and threads.
+ *
+ *  main() builds a book by searching every position where one side, playing the book
+ *  moves, meets any reply of the other, to a given number of plies:
+ *
+ *    java player.OpeningBook FILE [plies [depth]]     (default 4 plies, depth 4)
+ */
+
+public class OpeningBook {
+
+  static final int MAGIC = 0x4E424B31;
+  static final int HEADER_BYTES = 8;
+  static final int ENTRY_BYTES = 12;
+
+  private final MappedByteBuffer entries;
+  private final int size;
+
+  private OpeningBook(MappedByteBuffer entries) throws IOException {
+    this.entries = entries;
+    if(entries.capacity() < HEADER_BYTES || entries.getInt(0) != MAGIC) {
+      throw new IOException("not an opening book");
+    }
+    size = entries.getInt(4);
+    if(size < 0 || (long) HEADER_BYTES + (long) size * ENTRY_BYTES > entries.capacity()) {
+      throw new IOException("opening book is truncated");
+    }
+  }
+
+  /**
+   * open maps the book in the given file.
+   **/
+
+  public static OpeningBook open(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      map.order(ByteOrder.BIG_ENDIAN);
+      return new OpeningBook(map);
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Returns the number of positions in the book.
+   **/
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * lookup returns the book move for the position with the given key, packed by
+   * GameBoard.packMove(), or Searcher.NO_MOVE if the book does not have it.
+   **/
+
+  int lookup(long key) {
+    int low = 0;
+    int high = size - 1;
+    while(low <= high) {
+      int middle = (low + high) >>> 1;
+      int at = HEADER_BYTES + middle * ENTRY_BYTES;
+      long found = entries.getLong(at);
+      if(found < key) {
+        low = middle + 1;
+      } else if(found > key) {
+        high = middle - 1;
+      } else {
+        return entries.getInt(at + 8);
+      }
+    }
+    return Searcher.NO_MOVE;
+  }
+
+  /**
+   * lookup returns the book move of the player in the position on board, or
+   * Searcher.NO_MOVE if the book does not have one or its move is not valid there.
+   **/
+
+  int lookup(GameBoard board, int player) {
+    int move = lookup(board.hash(player));
+    if(move == Searcher.NO_MOVE || !board.isValidMove(player, move)) {
+      return Searcher.NO_MOVE;
+    }
+    return move;
+  }
+
+  /**
+   * write writes the entries of the map, from position key to packed move, to a book file.
+   **/
+
+  static void write(Path file, Map<Long, Integer> book) throws IOException {
+    long[] keys = new long[book.size()];
+    int n = 0;
+    for(Long key : book.keySet()) {
+      keys[n++] = key;
+    }
+    Arrays.sort(keys);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile())));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(keys.length);
+      for(int i=0; i<keys.length; i++) {
+        out.writeLong(keys[i]);
+        out.writeInt(book.get(keys[i]));
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * generate fills book with the best move, searched depth plies deep, of every
+   * position up to plies moves into the game where bookPlayer has played only book
+   * moves and the other player anything.  Positions already in the book are skipped.
+   **/
+
+  static void generate(GameBoard board, Searcher searcher, int player, int bookPlayer,
+                       int plies, int depth, Map<Long, Integer> book) {
+    if(plies == 0 || board.hasNetwork(0) || board.hasNetwork(1)) {
+      return;
+    }
+    int opponent = Math.abs(player-1);
+    if(player == bookPlayer) {
+      long key = board.hash(player);
+      Integer known = book.get(key);
+      int move;
+      if(known != null) {
+        move = known;
+      } else {
+        searcher.start(board, Long.MAX_VALUE);
+        move = searcher.searchRoot(player, depth);
+        if(move == Searcher.NO_MOVE) {
+          return;
+        }
+        book.put(key, move);
+      }
+      board.doMove(player, move);
+      generate(board, searcher, opponent, bookPlayer, plies-1, depth, book);
+      board.undoMove(player, move);
+    } else {
+      int[] moves = new int[GameBoard.MAXIMUM_MOVES];
+      int count = board.generateMoves(player, moves);
+      for(int i=0; i<count; i++) {
+        board.doMove(player, moves[i]);
+        generate(board, searcher, opponent, bookPlayer, plies-1, depth, book);
+        board.undoMove(player, moves[i]);
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if(args.length < 1) {
+      System.err.println("usage: java player.OpeningBook FILE [plies [depth]]");
+      System.exit(2);
+    }
+    Path file = Paths.get(args[0]);
+    int plies = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    int depth = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+    Map<Long, Integer> book = new HashMap<Long, Integer>();
+    GameBoard board = GameBoard.newBoard();
+    Searcher searcher = new Searcher(board, new TranspositionTable());
+    long start = System.nanoTime();
+    // White moves first.
+    generate(board, searcher, 1, 1, plies, depth, book);
+    generate(board, searcher, 1, 0, plies, depth, book);
+    write(file, book);
+    System.out.println(book.size() + " positions written to " + file + " in "
+                       + (System.nanoTime() - start) / 1000000 + "ms");
+  }
+
+}
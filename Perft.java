@@ -0,0 +1,80 @@
+/* Perft.java */
+
+package player;
+
+/**
+ *  Reference perft counts for a few standard positions, and a runner that checks
+ *  GameBoard.perft() against them and reports how fast it generates moves.  Run it
+ *  whenever the move generator or isValidMove() changes:
+ *
+ *    java player.Perft            checks every count, bulk and move by move
+ *    java player.Perft divide P D prints the divide of position P at depth D
+ *
+ *  A position is the moves that lead to it from the empty board, as
+ *  GameBoard.fromMoves() reads them.
+ */
+
+public class Perft {
+
+  static final String[] NAMES = { "start", "opening", "middlegame", "step" };
+
+  static final String[] POSITIONS = {
+    "",
+    "01 10 02 11",
+    "01 10 02 11 04 13 05 14 21 33 22 16 24 17",
+    "01 10 02 11 04 13 05 14 21 33 22 16 24 17 26 35 34 43 36 45 01:42 10:64 04:06 11:41"
+  };
+
+  // COUNTS[i][d-1] is perft(d) of POSITIONS[i].  Counts to depth 3 were checked against
+  // the original, list-based move generator.
+  static final long[][] COUNTS = {
+    { 48L, 2268L, 104904L, 4773960L, 205209696L },
+    { 42L, 1733L, 69782L, 2758700L, 101823312L },
+    { 29L, 878L, 23230L, 625984L, 14100252L },
+    { 196L, 37012L, 7119744L }
+  };
+
+  /**
+   * check runs perft on every position to every reference depth, in bulk and move by
+   * move, prints the counts and speeds, and returns the number of wrong counts.
+   **/
+
+  static int check() {
+    int failures = 0;
+    for(int i=0; i<POSITIONS.length; i++) {
+      GameBoard board = GameBoard.fromMoves(POSITIONS[i]);
+      int player = GameBoard.sideToMove(POSITIONS[i]);
+      for(int depth=1; depth<=COUNTS[i].length; depth++) {
+        for(int b=0; b<2; b++) {
+          boolean bulk = b == 0;
+          long start = System.nanoTime();
+          long nodes = board.perft(player, depth, bulk);
+          long nanos = Math.max(1, System.nanoTime() - start);
+          boolean ok = nodes == COUNTS[i][depth-1];
+          if(!ok) {
+            failures++;
+          }
+          System.out.println(NAMES[i] + " depth " + depth + (bulk ? " bulk " : " full ") + nodes
+                             + (ok ? "" : " WRONG, expected " + COUNTS[i][depth-1])
+                             + " " + nodes * 1000000000L / nanos + " nodes/s");
+        }
+      }
+    }
+    return failures;
+  }
+
+  public static void main(String[] args) {
+    if(args.length == 3 && args[0].equals("divide")) {
+      int i = java.util.Arrays.asList(NAMES).indexOf(args[1]);
+      String position = i >= 0 ? POSITIONS[i] : args[1];
+      GameBoard.fromMoves(position).divide(GameBoard.sideToMove(position), Integer.parseInt(args[2]), System.out);
+      return;
+    }
+    int failures = check();
+    System.out.println(failures == 0 ? "all counts match" : failures + " wrong counts");
+    if(failures != 0) {
+      System.exit(1);
+    }
+  }
+
+}
@@ -0,0 +1,164 @@
+/* PositionCodec.java */
+
+package player;
+
+import java.nio.ByteBuffer;
+import player.list.*;
+
+/**
+ *  Packs a position into 16 bytes, for storing positions by the million and sending
+ *  them over the wire.
+ *
+ *  A position is two big-endian longs, black's then white's.  Bits 6i to 6i+5 of a
+ *  player's long hold the square (y * 8 + x) of the i-th chip of that player's
+ *  ChipList.  A chip not yet on the board has square 0, a corner, where no chip may
+ *  ever be, so the number of chips each player has left costs no bits of its own.
+ *  Bit 60 of black's long is set when white is to move; the other bits are 0.
+ *
+ *  The board does not know whose move it is, so the caller says.  Encoding and
+ *  decoding read and write the buffer in place, at an index or at its position.
+ */
+
+public final class PositionCodec {
+
+  public static final int BYTES = 16;
+
+  private static final int SQUARE_BITS = 6;
+  private static final long CHIP_BITS = (1L << (SQUARE_BITS * MachinePlayer.NUM_CHIPS)) - 1;
+  private static final long WHITE_TO_MOVE = 1L << (SQUARE_BITS * MachinePlayer.NUM_CHIPS);
+
+  private PositionCodec() {
+  }
+
+  /**
+   * encode writes the position on board, with the given player to move, into the
+   * BYTES bytes of buffer starting at index.  The buffer's position is left alone.
+   **/
+
+  public static void encode(GameBoard board, int sideToMove, ByteBuffer buffer, int index) {
+    long black = chips(board.getChipList(0));
+    long white = chips(board.getChipList(1));
+    if(sideToMove == 1) {
+      black |= WHITE_TO_MOVE;
+    }
+    buffer.putLong(index, black);
+    buffer.putLong(index + 8, white);
+  }
+
+  /**
+   * encode writes the position at the buffer's position and moves the position past it.
+   **/
+
+  public static void encode(GameBoard board, int sideToMove, ByteBuffer buffer) {
+    int index = buffer.position();
+    encode(board, sideToMove, buffer, index);
+    buffer.position(index + BYTES);
+  }
+
+  /**
+   * Returns the squares of a player's chips, packed as in one long of a position.
+   **/
+
+  private static long chips(ChipList list) {
+    long packed = 0;
+    int i = 0;
+    Chip chip = list.front();
+    while(chip.isValid()) {
+      if(i == MachinePlayer.NUM_CHIPS) {
+        throw new IllegalArgumentException("more than " + MachinePlayer.NUM_CHIPS + " chips in a ChipList");
+      }
+      packed |= (long) (chip.y() << 3 | chip.x()) << (SQUARE_BITS * i);
+      chip = chip.next();
+      i++;
+    }
+    return packed;
+  }
+
+  /**
+   * Returns the player to move in the position starting at index.
+   **/
+
+  public static int sideToMove(ByteBuffer buffer, int index) {
+    return (buffer.getLong(index) & WHITE_TO_MOVE) != 0 ? 1 : 0;
+  }
+
+  /**
+   * Returns the number of chips the player has left in the position starting at index.
+   **/
+
+  public static int chipsLeft(ByteBuffer buffer, int index, int player) {
+    long packed = buffer.getLong(index + 8 * player);
+    int left = 0;
+    for(int i=0; i<MachinePlayer.NUM_CHIPS; i++) {
+      if(((packed >>> (SQUARE_BITS * i)) & 63) == 0) {
+        left++;
+      }
+    }
+    return left;
+  }
+
+  /**
+   * decode rebuilds the position starting at index on a new board with new ChipLists.
+   **/
+
+  public static GameBoard decode(ByteBuffer buffer, int index) {
+    return decode(buffer, index, new ChipList(0), new ChipList(1));
+  }
+
+  /**
+   * decode reads the position at the buffer's position, moves the position past it,
+   * and rebuilds it on a new board with new ChipLists.
+   **/
+
+  public static GameBoard decode(ByteBuffer buffer) {
+    int index = buffer.position();
+    GameBoard board = decode(buffer, index);
+    buffer.position(index + BYTES);
+    return board;
+  }
+
+  /**
+   * decode rebuilds the position starting at index on a new board, GameBoard(first,
+   * second), filling first and second, which must be empty and of different colors,
+   * with the players' chips in the order they were encoded.  Throws an
+   * IllegalArgumentException unless every chip is on a square its color may use, no
+   * two chips share a square, and each player's chips on the board come before those
+   * not yet played, as doMove() needs them.
+   **/
+
+  public static GameBoard decode(ByteBuffer buffer, int index, ChipList first, ChipList second) {
+    if(!first.isEmpty() || !second.isEmpty() || first.player() == second.player()
+       || (first.player() & ~1) != 0 || (second.player() & ~1) != 0) {
+      throw new IllegalArgumentException("decode needs two empty ChipLists, one of each color");
+    }
+    long black = buffer.getLong(index);
+    long white = buffer.getLong(index + 8);
+    if((black & ~(CHIP_BITS | WHITE_TO_MOVE)) != 0 || (white & ~CHIP_BITS) != 0) {
+      throw new IllegalArgumentException("not an encoded position");
+    }
+    GameBoard board = new GameBoard(first, second);
+    long taken = 0;
+    for(int player=0; player<2; player++) {
+      ChipList list = first.player() == player ? first : second;
+      long packed = player == 0 ? black : white;
+      boolean unplayed = false;
+      for(int i=0; i<MachinePlayer.NUM_CHIPS; i++) {
+        int square = (int) (packed >>> (SQUARE_BITS * i)) & 63;
+        Chip chip = new Chip(player, 0, 0, list);
+        list.insertBack(chip);
+        if(square == 0) {
+          unplayed = true;
+          continue;
+        }
+        long bit = 1L << square;
+        if(unplayed || (GameBoard.allowedSquares(player) & bit) == 0 || (taken & bit) != 0) {
+          throw new IllegalArgumentException("not a valid position");
+        }
+        taken |= bit;
+        board.placeChip(chip, square & 7, square >>> 3);
+      }
+    }
+    return board;
+  }
+
+}
@@ -0,0 +1,189 @@
+/* SearchStats.java */
+
+package player;
+
+/**
+ *  What one call to MachinePlayer.chooseMove() did: how many positions it visited,
+ *  where its cutoffs came from, how deep it got and how long it took.  The counts
+ *  of all search threads are added together.  Each searcher counts in plain longs
+ *  of its own, and MachinePlayer merges them once the move is chosen, so the
+ *  counting is always on.
+ */
+
+public class SearchStats {
+
+  /**
+   * A Listener hears about every move a MachinePlayer chooses, on the thread that
+   * called chooseMove(), just before chooseMove() returns.
+   **/
+
+  public interface Listener {
+    void moveChosen(SearchStats stats);
+  }
+
+  /**
+   * Cutoffs by the index of the move that caused them are counted up to this index;
+   * cutoffs by later moves are counted together in the last slot.
+   **/
+
+  public static final int CUTOFF_SLOTS = 16;
+
+  long nodes;
+  long evaluations;
+  long networkChecks;
+  long[] cutoffs = new long[CUTOFF_SLOTS];
+  int completedDepth;
+  int maximumPly;
+  long elapsedNanos;
+  int score;
+  Move move;
+  boolean bookMove;
+  boolean ponderHit;
+
+  /**
+   * Returns the number of positions visited, including the leaves.
+   **/
+
+  public long getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Returns the number of moves scored by GameBoard.evaluate() at the leaves.
+   **/
+
+  public long getEvaluations() {
+    return evaluations;
+  }
+
+  /**
+   * Returns the number of network searches, both the search's own hasNetwork() calls
+   * and those inside evaluate().
+   **/
+
+  public long getNetworkChecks() {
+    return networkChecks;
+  }
+
+  /**
+   * Returns the number of beta cutoffs caused by the move at the given index of the
+   * sorted move list; the last slot counts every index from CUTOFF_SLOTS-1 on.
+   **/
+
+  public long getCutoffs(int index) {
+    return cutoffs[Math.min(index, CUTOFF_SLOTS - 1)];
+  }
+
+  /**
+   * Returns the total number of beta cutoffs.
+   **/
+
+  public long getCutoffs() {
+    long total = 0;
+    for(int i=0; i<CUTOFF_SLOTS; i++) {
+      total += cutoffs[i];
+    }
+    return total;
+  }
+
+  /**
+   * Returns the fraction of cutoffs caused by the first move searched, a measure of
+   * how good the move ordering is.
+   **/
+
+  public double getFirstMoveCutoffRate() {
+    long total = getCutoffs();
+    return total == 0 ? 0 : (double) cutoffs[0] / total;
+  }
+
+  /**
+   * Returns the depth of the deepest search that finished.
+   **/
+
+  public int getCompletedDepth() {
+    return completedDepth;
+  }
+
+  /**
+   * Returns the deepest ply below the root at which a position was visited.
+   **/
+
+  public int getMaximumPly() {
+    return maximumPly;
+  }
+
+  /**
+   * Returns the effective branching factor, the number b for which b^depth positions
+   * would be as many as the search visited to finish its deepest search.
+   **/
+
+  public double getEffectiveBranchingFactor() {
+    if(completedDepth == 0 || nodes == 0) {
+      return 0;
+    }
+    return Math.pow(nodes, 1.0 / completedDepth);
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  public long getNodesPerSecond() {
+    return elapsedNanos == 0 ? 0 : nodes * 1000000000L / elapsedNanos;
+  }
+
+  /**
+   * Returns the score of the chosen move, from the point of view of the player who
+   * chose it.
+   **/
+
+  public int getScore() {
+    return score;
+  }
+
+  public Move getMove() {
+    return move;
+  }
+
+  /**
+   * Returns whether the move came from the opening book, in which case nothing was
+   * searched and the score is 0.
+   **/
+
+  public boolean isBookMove() {
+    return bookMove;
+  }
+
+  /**
+   * Returns whether the search started from a pondering search of this position, made
+   * while the opponent was thinking.  Its counts are included.
+   **/
+
+  public boolean isPonderHit() {
+    return ponderHit;
+  }
+
+  /**
+   * add adds the counts of one searcher to these.
+   **/
+
+  void add(Searcher searcher) {
+    nodes += searcher.nodes();
+    evaluations += searcher.evaluations();
+    networkChecks += searcher.networkChecks();
+    maximumPly = Math.max(maximumPly, searcher.maximumPly());
+    long[] counted = searcher.cutoffs();
+    for(int i=0; i<CUTOFF_SLOTS; i++) {
+      cutoffs[i] += counted[i];
+    }
+  }
+
+  public String toString() {
+    return "move " + move + (bookMove ? " from book" : "") + (ponderHit ? " pondered" : "") + " score " + score + " depth " + completedDepth + " ply " + maximumPly
+        + " nodes " + nodes + " evaluations " + evaluations + " network checks " + networkChecks
+        + " cutoffs " + getCutoffs() + " first-move cutoffs " + Math.round(100 * getFirstMoveCutoffRate()) + "%"
+        + " branching " + String.format("%.2f", getEffectiveBranchingFactor())
+        + " time " + elapsedNanos / 1000000 + "ms " + getNodesPerSecond() + " nodes/s";
+  }
+
+}
@@ -0,0 +1,466 @@
+/* Searcher.java */
+
+package player;
+
+import java.util.Arrays;
+
+/**
+ *  The alpha-beta search behind MachinePlayer.  A Searcher walks the game tree on one
+ *  GameBoard by making and taking back moves, so each thread that searches needs its
+ *  own Searcher and its own board.
+ */
+
+class Searcher {
+
+  static final int INFINITY = GameBoard.MAXIMUM_SCORE + 1;
+  static final int WIN_THRESHOLD = GameBoard.MAXIMUM_SCORE - 64;
+  static final int MAXIMUM_DEPTH = 32;
+  static final int NO_MOVE = Move.QUIT << 12;
+
+  private static final int KILLERS = 2;
+  private static final int HISTORY_LIMIT = 1 << 20;
+  private static final int TABLE_MOVE_RANK = HISTORY_LIMIT + KILLERS + 1;
+
+  private GameBoard board;
+  private TranspositionTable table;
+  private int[][] moveBuffers;
+  private long[][] sortBuffers;
+  private int[][] killers;
+  private int[][] history;
+  private long nodes;
+  private long evaluations;
+  private long networkChecksAtStart;
+  private long[] cutoffs;
+  private int maximumPly;
+  private long deadline;
+  private boolean stopped;
+  private volatile boolean aborted;
+  private int rootScore;
+  private boolean shared;
+
+  Searcher(GameBoard board, TranspositionTable table) {
+    this.board = board;
+    this.table = table;
+    moveBuffers = new int[MAXIMUM_DEPTH + 1][GameBoard.MAXIMUM_MOVES];
+    sortBuffers = new long[MAXIMUM_DEPTH + 1][GameBoard.MAXIMUM_MOVES];
+    killers = new int[MAXIMUM_DEPTH + 1][KILLERS];
+    history = new int[2][1 << 12];
+    cutoffs = new long[SearchStats.CUTOFF_SLOTS];
+  }
+
+  /**
+   * start gets the Searcher ready for a new move: it searches the given board, must stop
+   * at the deadline (a System.nanoTime() value), and counts nodes and the rest of its
+   * statistics from zero.  What the last move learned about move order is kept, as the
+   * new root is most often two plies below the last one: killer moves move up two
+   * plies, and history scores are halved, so that they count for less than new ones.
+   * A shared Searcher forgets them instead.
+   **/
+
+  void start(GameBoard board, long deadline) {
+    this.board = board;
+    this.deadline = deadline;
+    nodes = 0;
+    evaluations = 0;
+    networkChecksAtStart = board.networkChecks();
+    Arrays.fill(cutoffs, 0);
+    maximumPly = 0;
+    stopped = false;
+    aborted = false;
+    if(shared) {
+      for(int i=0; i<killers.length; i++) {
+        Arrays.fill(killers[i], NO_MOVE);
+      }
+      Arrays.fill(history[0], 0);
+      Arrays.fill(history[1], 0);
+      return;
+    }
+    for(int i=0; i<killers.length; i++) {
+      if(i + 2 < killers.length) {
+        System.arraycopy(killers[i + 2], 0, killers[i], 0, KILLERS);
+      } else {
+        Arrays.fill(killers[i], NO_MOVE);
+      }
+    }
+    for(int p=0; p<2; p++) {
+      int[] scores = history[p];
+      for(int i=0; i<scores.length; i++) {
+        scores[i] >>= 1;
+      }
+    }
+  }
+
+  /**
+   * setShared says whether games take turns with this Searcher, as those of one
+   * GameServer worker do.  The last move it searched is then most often another game's,
+   * so start() keeps nothing of its move order, and the players do not let the table
+   * drop entries with fewer chips than their own board, which other games may still
+   * reach.
+   **/
+
+  void setShared(boolean shared) {
+    this.shared = shared;
+  }
+
+  boolean isShared() {
+    return shared;
+  }
+
+  void setDeadline(long deadline) {
+    this.deadline = deadline;
+  }
+
+  /**
+   * abort asks a search running on another thread to stop soon.  It may be called
+   * from any thread.
+   **/
+
+  void abort() {
+    aborted = true;
+  }
+
+  /**
+   * resume clears an abort() so that the Searcher can search again for the same move.
+   **/
+
+  void resume() {
+    aborted = false;
+    stopped = false;
+  }
+
+  /**
+   * Returns the number of positions visited since start().
+   **/
+
+  long nodes() {
+    return nodes;
+  }
+
+  /**
+   * Returns the number of moves scored by GameBoard.evaluate() since start().
+   **/
+
+  long evaluations() {
+    return evaluations;
+  }
+
+  /**
+   * Returns the number of network searches made on the board since start().
+   **/
+
+  long networkChecks() {
+    return board.networkChecks() - networkChecksAtStart;
+  }
+
+  /**
+   * Returns the number of beta cutoffs since start() by the index of the move that
+   * caused them, as SearchStats counts them.
+   **/
+
+  long[] cutoffs() {
+    return cutoffs;
+  }
+
+  /**
+   * Returns the deepest ply below the root reached since start().
+   **/
+
+  int maximumPly() {
+    return maximumPly;
+  }
+
+  /**
+   * Returns whether the search ran out of time.  The results of a stopped search mean nothing.
+   **/
+
+  boolean stopped() {
+    return stopped;
+  }
+
+  /**
+   * Returns the score of the best move found by the last searchRoot() that finished.
+   **/
+
+  int rootScore() {
+    return rootScore;
+  }
+
+  TranspositionTable table() {
+    return table;
+  }
+
+  /**
+   * rootMoves writes the player's moves into moves, the transposition table's move
+   * first, and returns how many there are.
+   **/
+
+  int rootMoves(int player, int[] moves) {
+    return orderedMoves(player, table.probe(board.hash(player)), moves);
+  }
+
+  /**
+   * searchRoot runs minimax on every move of the player and returns the best one,
+   * packed as by GameBoard.packMove(), or NO_MOVE if there is none.
+   * Ties go to the move that comes first, which is the transposition table's move
+   * when it has one.
+   **/
+
+  int searchRoot(int player, int depth) {
+    int[] moves = moveBuffers[0];
+    int count = rootMoves(player, moves);
+    int bestMove = NO_MOVE;
+    int alpha = -INFINITY;
+    for(int i=0; i<count; i++) {
+      int score = scoreMove(player, moves[i], depth, alpha, INFINITY, 0);
+      if(stopped) {
+        return bestMove;
+      }
+      if(bestMove == NO_MOVE || score > alpha) {
+        alpha = score;
+        bestMove = moves[i];
+      }
+    }
+    if(bestMove != NO_MOVE) {
+      storeRoot(player, depth, bestMove, alpha);
+    }
+    return bestMove;
+  }
+
+  /**
+   * storeRoot records the result of a finished root search.
+   **/
+
+  void storeRoot(int player, int depth, int bestMove, int score) {
+    rootScore = score;
+    table.store(board.hash(player), depth, score, TranspositionTable.EXACT, bestMove, chips());
+  }
+
+  /**
+   * scoreRootMove returns the score of one root move, searched with the window
+   * (alpha, INFINITY).  A score at or below alpha is only an upper bound.
+   **/
+
+  int scoreRootMove(int player, int move, int depth, int alpha) {
+    return scoreMove(player, move, depth, alpha, INFINITY, 0);
+  }
+
+  /**
+   * minimax is a fail-soft negamax alpha-beta search.  It returns the score of the
+   * position for the player to move, searched depth plies deep.  A returned score
+   * at or below alpha is an upper bound on the true score, one at or above beta is
+   * a lower bound, and any other score is exact.
+   **/
+
+  private int minimax(int player, int depth, int alpha, int beta, int ply) {
+    if(outOfTime()) {
+      return 0;
+    }
+    if(ply > maximumPly) {
+      maximumPly = ply;
+    }
+    long key = board.hash(player);
+    long entry = table.probe(key);
+    if(entry != 0 && TranspositionTable.depth(entry) >= depth) {
+      int stored = TranspositionTable.score(entry);
+      int bound = TranspositionTable.bound(entry);
+      if(bound == TranspositionTable.EXACT ||
+         (bound == TranspositionTable.LOWER && stored >= beta) ||
+         (bound == TranspositionTable.UPPER && stored <= alpha)) {
+        return stored;
+      }
+    }
+    int alphaIn = alpha;
+    int best = -INFINITY;
+    int bestMove = NO_MOVE;
+    int[] moves = moveBuffers[ply];
+    int count = sortedMoves(player, entry, moves, ply);
+    for(int i=0; i<count; i++) {
+      int score = scoreMove(player, moves[i], depth, alpha, beta, ply);
+      if(stopped) {
+        break;
+      }
+      if(score > best) {
+        best = score;
+        bestMove = moves[i];
+        if(score > alpha) {
+          alpha = score;
+          if(alpha >= beta) {
+            cutoffs[Math.min(i, SearchStats.CUTOFF_SLOTS - 1)]++;
+            cutoff(player, moves[i], depth, ply);
+            break;
+          }
+        }
+      }
+    }
+    if(bestMove == NO_MOVE || stopped) {
+      return 0;
+    }
+    int bound = TranspositionTable.EXACT;
+    if(best <= alphaIn) {
+      bound = TranspositionTable.UPPER;
+    } else if(best >= beta) {
+      bound = TranspositionTable.LOWER;
+    }
+    table.store(key, depth, best, bound, bestMove, chips());
+    return best;
+  }
+
+  /**
+   * Returns the number of chips on the board.
+   **/
+
+  private int chips() {
+    return Long.bitCount(board.chips(0) | board.chips(1));
+  }
+
+  /**
+   * outOfTime counts a visited position and, every few positions, stops the search
+   * once the time for this move has run out or another thread has aborted it.
+   **/
+
+  private boolean outOfTime() {
+    nodes++;
+    if((nodes & 15) == 0 && (aborted || System.nanoTime() > deadline)) {
+      stopped = true;
+    }
+    return stopped;
+  }
+
+  /**
+   * scoreMove returns the score of a move for the player who makes it.  On the last
+   * ply that is GameBoard.evaluate(); otherwise a move that completes a network ends
+   * the game as GameBoard.winner() decides it, so completing both networks loses,
+   * and any other move is scored by searching the reply.  Wins and losses lose a
+   * point for every ply they are away, so the search prefers quick wins and slow
+   * losses.  The reply is searched with a window widened to match (see widen()).
+   **/
+
+  private int scoreMove(int player, int move, int depth, int alpha, int beta, int ply) {
+    if(depth <= 1) {
+      if(outOfTime()) {
+        return 0;
+      }
+      evaluations++;
+      if(ply >= maximumPly) {
+        maximumPly = ply + 1;
+      }
+      return board.evaluate(player, move);
+    }
+    int opponent = Math.abs(player-1);
+    int score;
+    board.doMove(player, move);
+    int winner = board.winner(player);
+    if(winner == player) {
+      score = GameBoard.MAXIMUM_SCORE;
+    } else if(winner == opponent) {
+      score = -GameBoard.MAXIMUM_SCORE;
+    } else {
+      score = -minimax(opponent, depth-1, -widen(beta), -widen(alpha), ply+1);
+      if(score > WIN_THRESHOLD) {
+        score--;
+      } else if(score < -WIN_THRESHOLD) {
+        score++;
+      }
+    }
+    board.undoMove(player, move);
+    return score;
+  }
+
+  /**
+   * widen returns a bound of the window for the reply to a move, in the mover's terms.
+   * A win or loss the reply's search finds is a point further from zero than it is
+   * worth to the mover, so a bound past WIN_THRESHOLD moves a point away from zero.
+   * A score the reply's search proves to lie beyond the widened bound then still lies
+   * beyond the mover's own once scoreMove() takes that point off.
+   **/
+
+  private static int widen(int bound) {
+    if(bound > WIN_THRESHOLD && bound < INFINITY) {
+      return bound + 1;
+    }
+    if(bound < -WIN_THRESHOLD && bound > -INFINITY) {
+      return bound - 1;
+    }
+    return bound;
+  }
+
+  /**
+   * sortedMoves writes the player's valid moves into moves, best guesses first, and
+   * returns how many there are.  The transposition table's move comes first, then the
+   * killer moves of this ply, newest first, then the others by their history score.
+   * Moves that tie keep the order generateMoves() gave them.
+   **/
+
+  private int sortedMoves(int player, long entry, int[] moves, int ply) {
+    int count = board.generateMoves(player, moves);
+    int hashMove = entry == 0 ? NO_MOVE : TranspositionTable.move(entry);
+    int[] killer = killers[ply];
+    int[] scores = history[player];
+    long[] keys = sortBuffers[ply];
+    for(int i=0; i<count; i++) {
+      int move = moves[i];
+      int rank;
+      if(move == hashMove) {
+        rank = TABLE_MOVE_RANK;
+      } else if(move == killer[0]) {
+        rank = HISTORY_LIMIT + 2;
+      } else if(move == killer[1]) {
+        rank = HISTORY_LIMIT + 1;
+      } else {
+        rank = scores[move & 0xFFF];
+      }
+      // Sorted ascending, a key puts higher ranks last and, within a rank, earlier moves last.
+      keys[i] = ((long) rank << 24) | ((long) (GameBoard.MAXIMUM_MOVES - i) << 14) | move;
+    }
+    Arrays.sort(keys, 0, count);
+    for(int i=0; i<count; i++) {
+      moves[i] = (int) keys[count-1-i] & 0x3FFF;
+    }
+    return count;
+  }
+
+  /**
+   * cutoff records that the player's move at this ply refuted the move before it: the
+   * move becomes the newest killer of the ply, and its history score grows with the
+   * square of the depth left.  History scores are halved when one gets too big, so
+   * that newer cutoffs count for more.
+   **/
+
+  private void cutoff(int player, int move, int depth, int ply) {
+    int[] killer = killers[ply];
+    if(killer[0] != move) {
+      killer[1] = killer[0];
+      killer[0] = move;
+    }
+    int[] scores = history[player];
+    scores[move & 0xFFF] += depth * depth;
+    if(scores[move & 0xFFF] >= HISTORY_LIMIT) {
+      for(int i=0; i<scores.length; i++) {
+        scores[i] >>= 1;
+      }
+    }
+  }
+
+  /**
+   * orderedMoves writes the player's valid moves into moves and returns how many
+   * there are.  The move of the transposition table entry, if it has one, is moved
+   * to the front; the others keep their order.
+   **/
+
+  private int orderedMoves(int player, long entry, int[] moves) {
+    int count = board.generateMoves(player, moves);
+    if(entry == 0) {
+      return count;
+    }
+    int hashMove = TranspositionTable.move(entry);
+    for(int i=1; i<count; i++) {
+      if(moves[i] == hashMove) {
+        System.arraycopy(moves, 0, moves, 1, i);
+        moves[0] = hashMove;
+        break;
+      }
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,512 @@
+/* Solver.java */
+
+package player;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *  Solves Network problems exactly with depth-first proof-number search (df-pn).
+ *
+ *  solve() asks whether the player to move can force a network within a number of
+ *  plies, and if not, whether the opponent can.  Unlike minimax it needs no
+ *  evaluation: a position is only ever won, lost, or not yet known.  The proof and
+ *  disproof numbers of positions are kept in a table of fixed size, so memory stays
+ *  bounded however long the search runs; positions pushed out of it are searched
+ *  again if needed.  A position may go in either slot of a pair, pushing out the
+ *  entry worth less: solved positions are worth more than open ones, and among
+ *  those alike, the one that took more positions to search is worth more.  A
+ *  position is stored with the number of plies left, since a position that is
+ *  lost with few plies left may be won with more.
+ *
+ *  As in the official rules, a move that completes networks for both players loses.
+ *
+ *  main() solves a batch of problems, one per line of standard input: the ply bound
+ *  followed by the moves that lead to the position, written as for
+ *  GameBoard.fromMoves().
+ */
+
+public class Solver {
+
+  public static final int WIN = 1;
+  public static final int LOSS = -1;
+  public static final int UNKNOWN = 0;
+
+  static final int DEFAULT_BITS = 20;
+
+  private static final int INFINITY = 100000000;
+
+  private final GameBoard board;
+  private final int maximumPlies;
+  private final long maximumNodes;
+  private final long[] tableKeys;
+  private final int[] tablePhi;
+  private final int[] tableDelta;
+  private final long[] tableWork;
+  private final int tableMask;
+  private int[][] moveBuffers;
+  private long[][] childKeys;
+  private int[][] childPhi;
+  private int[][] childDelta;
+  private int attacker;
+  private long nodes;
+  private boolean truncated;
+
+  /**
+   * Creates a Solver for the position on board, which it searches by making and
+   * taking back moves, looking at most maximumPlies plies ahead, expanding at most
+   * maximumNodes positions, and keeping 2^tableBits positions in its table.
+   **/
+
+  Solver(GameBoard board, int maximumPlies, long maximumNodes, int tableBits) {
+    if(maximumPlies < 1 || maximumPlies > Searcher.MAXIMUM_DEPTH) {
+      throw new IllegalArgumentException("plies must be from 1 to " + Searcher.MAXIMUM_DEPTH);
+    }
+    this.board = board;
+    this.maximumPlies = maximumPlies;
+    this.maximumNodes = maximumNodes;
+    tableKeys = new long[1 << tableBits];
+    tablePhi = new int[1 << tableBits];
+    tableDelta = new int[1 << tableBits];
+    tableWork = new long[1 << tableBits];
+    tableMask = (1 << tableBits) - 1;
+    moveBuffers = new int[maximumPlies + 1][GameBoard.MAXIMUM_MOVES];
+    childKeys = new long[maximumPlies + 1][GameBoard.MAXIMUM_MOVES];
+    childPhi = new int[maximumPlies + 1][GameBoard.MAXIMUM_MOVES];
+    childDelta = new int[maximumPlies + 1][GameBoard.MAXIMUM_MOVES];
+  }
+
+  /**
+   * The answer to a problem: whether the player to move wins or loses by force, the
+   * line of play that shows it, the number of positions in the proof, and the number
+   * of positions the search expanded to find it.
+   **/
+
+  public static class Result {
+
+    private final int outcome;
+    private final Move[] line;
+    private final long proofSize;
+    private final long nodes;
+    private final boolean complete;
+
+    Result(int outcome, Move[] line, long proofSize, long nodes, boolean complete) {
+      this.outcome = outcome;
+      this.line = line;
+      this.proofSize = proofSize;
+      this.nodes = nodes;
+      this.complete = complete;
+    }
+
+    /**
+     * Returns WIN or LOSS for the player to move, or UNKNOWN if neither player can force
+     * a network within the ply bound, or the node limit ran out first.
+     **/
+
+    public int getOutcome() {
+      return outcome;
+    }
+
+    /**
+     * Returns the main line of the proof: the winner's moves are the quickest wins, the
+     * loser's moves hold out longest.  Empty when the outcome is UNKNOWN.
+     **/
+
+    public Move[] getLine() {
+      return line;
+    }
+
+    /**
+     * Returns the number of distinct positions in the proof tree.
+     **/
+
+    public long getProofSize() {
+      return proofSize;
+    }
+
+    public long getNodes() {
+      return nodes;
+    }
+
+    /**
+     * Returns false if the node limit ran out while the line and the proof were walked,
+     * after the outcome was proved.  The line then stops short, and the proof size counts
+     * only the part of the proof that was walked.
+     **/
+
+    public boolean isComplete() {
+      return complete;
+    }
+
+    public String toString() {
+      StringBuilder s = new StringBuilder();
+      s.append(outcome == WIN ? "win" : outcome == LOSS ? "loss" : "unknown");
+      for(int i=0; i<line.length; i++) {
+        s.append(' ').append(line[i]);
+      }
+      s.append(" proof ").append(proofSize).append(" nodes ").append(nodes);
+      if(!complete) {
+        s.append(" (incomplete)");
+      }
+      return s.toString();
+    }
+  }
+
+  /**
+   * solve returns whether the player, to move on the board, can force a win or must
+   * lose within the ply bound.
+   **/
+
+  Result solve(int player) {
+    nodes = 0;
+    int opponent = Math.abs(player-1);
+    if(prove(player, player)) {
+      return result(WIN, player, player);
+    }
+    if(nodes < maximumNodes && prove(opponent, player)) {
+      return result(LOSS, opponent, player);
+    }
+    return new Result(UNKNOWN, new Move[0], 0, nodes, true);
+  }
+
+  /**
+   * prove returns whether attacker can force a network, with player to move at the root.
+   **/
+
+  private boolean prove(int attacker, int player) {
+    this.attacker = attacker;
+    // Out of plies, the attacker loses, so what the table knows holds for one attacker only.
+    Arrays.fill(tableKeys, 0);
+    long key = key(player, maximumPlies);
+    while(nodes < maximumNodes) {
+      search(player, maximumPlies, INFINITY - 1, INFINITY - 1);
+      long at = probe(key);
+      if(at >= 0) {
+        int phi = tablePhi[(int) at];
+        int delta = tableDelta[(int) at];
+        if(phi == 0 || delta == 0) {
+          // phi is for the player to move.
+          return (phi == 0) == (player == attacker);
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * search is df-pn's multiple iterative deepening: it expands the position, with
+   * player to move and plies left, until its phi reaches phiLimit or its delta reaches
+   * deltaLimit.  phi and delta are the proof and disproof numbers of "the player to
+   * move wins", so a child's phi is its parent's delta and the other way round.  Each
+   * ply has buffers of its own, which the searches below it, having fewer plies left,
+   * never touch.
+   **/
+
+  private void search(int player, int plies, int phiLimit, int deltaLimit) {
+    long start = nodes++;
+    int opponent = Math.abs(player-1);
+    int[] moves = moveBuffers[plies];
+    long[] keys = childKeys[plies];
+    int[] phis = childPhi[plies];
+    int[] deltas = childDelta[plies];
+    int count = board.generateMoves(player, moves);
+    for(int i=0; i<count; i++) {
+      board.doMove(player, moves[i]);
+      keys[i] = 0;
+      int winner = board.winner(player);
+      if(winner == player) {
+        phis[i] = INFINITY;
+        deltas[i] = 0;
+      } else if(winner == opponent) {
+        phis[i] = 0;
+        deltas[i] = INFINITY;
+      } else if(plies == 1) {
+        // Out of plies: the defender, whoever is to move, has held out.
+        phis[i] = opponent == attacker ? INFINITY : 0;
+        deltas[i] = opponent == attacker ? 0 : INFINITY;
+      } else {
+        keys[i] = key(opponent, plies - 1);
+        phis[i] = 1;
+        deltas[i] = 1;
+      }
+      board.undoMove(player, moves[i]);
+    }
+    long key = key(player, plies);
+    while(true) {
+      int phi = INFINITY;
+      int delta = 0;
+      int best = -1;
+      int bestDelta = INFINITY;
+      int secondDelta = INFINITY;
+      for(int i=0; i<count; i++) {
+        // A child the table has lost keeps the numbers its last search left here.
+        long at = keys[i] != 0 ? probe(keys[i]) : -1;
+        if(at >= 0) {
+          phis[i] = tablePhi[(int) at];
+          deltas[i] = tableDelta[(int) at];
+        }
+        phi = Math.min(phi, deltas[i]);
+        delta = Math.min(INFINITY, delta + phis[i]);
+        if(deltas[i] < bestDelta) {
+          secondDelta = bestDelta;
+          bestDelta = deltas[i];
+          best = i;
+        } else if(deltas[i] < secondDelta) {
+          secondDelta = deltas[i];
+        }
+      }
+      if(count == 0) {
+        // A player who cannot move holds out.
+        phi = player == attacker ? INFINITY : 0;
+        delta = player == attacker ? 0 : INFINITY;
+      }
+      if(phi >= phiLimit || delta >= deltaLimit || nodes >= maximumNodes || best < 0 || keys[best] == 0) {
+        store(key, phi, delta, nodes - start);
+        return;
+      }
+      int childPhiLimit = deltaLimit - delta + phis[best];
+      int childDeltaLimit = Math.min(phiLimit, secondDelta + 1);
+      board.doMove(player, moves[best]);
+      search(opponent, plies - 1, childPhiLimit, childDeltaLimit);
+      board.undoMove(player, moves[best]);
+    }
+  }
+
+  /**
+   * Returns the table key of the position on the board with player to move and plies left.
+   * Never 0, which marks a child that needs no table.
+   **/
+
+  private long key(int player, int plies) {
+    long key = (board.hash(player) ^ (plies * 0x9E3779B97F4A7C15L)) * 0xBF58476D1CE4E5B9L;
+    return key == 0 ? 1 : key;
+  }
+
+  private long probe(long key) {
+    int slot = (int) (key >>> 32) & tableMask & ~1;
+    if(tableKeys[slot] == key) {
+      return slot;
+    }
+    return tableKeys[slot + 1] == key ? slot + 1 : -1;
+  }
+
+  /**
+   * store records the proof and disproof numbers of a position, and the number of
+   * positions searched to find them, in the slot of its pair that holds it already,
+   * or else in the one whose entry is worth less.
+   **/
+
+  private void store(long key, int phi, int delta, long work) {
+    int slot = (int) (key >>> 32) & tableMask & ~1;
+    if(tableKeys[slot] != key && (tableKeys[slot + 1] == key || worth(slot + 1) < worth(slot))) {
+      slot++;
+    }
+    tableKeys[slot] = key;
+    tablePhi[slot] = phi;
+    tableDelta[slot] = delta;
+    tableWork[slot] = work;
+  }
+
+  /**
+   * Returns what the entry in a slot is worth keeping: nothing if the slot is empty,
+   * the work it took if the position is open, and more than any open position if it
+   * is solved.
+   **/
+
+  private long worth(int slot) {
+    if(tableKeys[slot] == 0) {
+      return -1;
+    }
+    boolean solved = tablePhi[slot] == 0 || tableDelta[slot] == 0;
+    return solved ? Long.MAX_VALUE / 2 + tableWork[slot] : tableWork[slot];
+  }
+
+  /**
+   * result walks the proof of a win for winner, with player to move at the root, to
+   * find its main line and size.
+   **/
+
+  private Result result(int outcome, int winner, int player) {
+    attacker = winner;
+    truncated = false;
+    Map<Long, Integer> best = new HashMap<Long, Integer>();
+    walk(player, maximumPlies, best, new HashMap<Long, Integer>());
+    List<Integer> line = new ArrayList<Integer>();
+    int mover = player;
+    for(int plies = maximumPlies; plies > 0; plies--) {
+      Integer move = best.get(key(mover, plies));
+      if(move == null) {
+        break;
+      }
+      line.add(move);
+      board.doMove(mover, move);
+      if(board.winner(mover) >= 0) {
+        break;
+      }
+      mover = Math.abs(mover-1);
+    }
+    Move[] moves = new Move[line.size()];
+    for(int i=line.size()-1; i>=0; i--) {
+      board.undoMove(i % 2 == 0 ? player : Math.abs(player-1), line.get(i));
+      moves[i] = GameBoard.unpackMove(line.get(i));
+    }
+    long size = proofSize(player, maximumPlies, best, new HashMap<Long, Integer>());
+    return new Result(outcome, moves, size, nodes, !truncated);
+  }
+
+  /**
+   * walk finds, for the proven position with player to move and plies left, how many
+   * plies the game lasts with best play, and records in best the move that gets
+   * there: the quickest win the attacker has proved, and the longest defence of the
+   * other player.  The other player's moves are all lost, so each is proved again if
+   * the table no longer knows it.  lengths remembers the positions already walked.
+   * If the node limit runs out first, no move is recorded and the length is 0.
+   **/
+
+  private int walk(int player, int plies, Map<Long, Integer> best, Map<Long, Integer> lengths) {
+    long key = key(player, plies);
+    Integer known = lengths.get(key);
+    if(known != null) {
+      return known;
+    }
+    int opponent = Math.abs(player-1);
+    int[] moves = new int[GameBoard.MAXIMUM_MOVES];
+    int count = board.generateMoves(player, moves);
+    boolean attacking = player == attacker;
+    int bestLength = attacking ? Integer.MAX_VALUE : 0;
+    int bestMove = Searcher.NO_MOVE;
+    // The attacker first looks among the moves the table knows to win, and searches
+    // the others, in order, only if the table has lost them all.
+    for(int pass=0; pass<2 && bestMove == Searcher.NO_MOVE; pass++) {
+      for(int i=0; i<count; i++) {
+        board.doMove(player, moves[i]);
+        int winner = board.winner(player);
+        int length = 0;
+        if(winner == attacker) {
+          length = 1;
+        } else if(winner < 0 && plies > 1 &&
+                  (pass == 0 && attacking ? known(opponent, plies - 1) : proven(opponent, plies - 1))) {
+          length = 1 + walk(opponent, plies - 1, best, lengths);
+        }
+        board.undoMove(player, moves[i]);
+        if(length > 0 && (attacking ? length < bestLength : length > bestLength)) {
+          bestLength = length;
+          bestMove = moves[i];
+        }
+        if(attacking && pass == 1 && bestMove != Searcher.NO_MOVE) {
+          break;
+        }
+      }
+      if(!attacking) {
+        break;
+      }
+    }
+    if(bestMove == Searcher.NO_MOVE) {
+      truncated = true;
+      bestLength = 0;
+    } else {
+      best.put(key, bestMove);
+    }
+    lengths.put(key, bestLength);
+    return bestLength;
+  }
+
+  /**
+   * proofSize returns the number of distinct positions in the proof below the position
+   * with player to move and plies left, itself included: one move of the attacker, every
+   * move of the other player.  Positions where the game is over are not counted.
+   **/
+
+  private long proofSize(int player, int plies, Map<Long, Integer> best, Map<Long, Integer> counted) {
+    long key = key(player, plies);
+    if(counted.containsKey(key)) {
+      return 0;
+    }
+    counted.put(key, 1);
+    long size = 1;
+    int opponent = Math.abs(player-1);
+    if(player == attacker) {
+      Integer move = best.get(key);
+      if(move == null) {
+        truncated = true;
+        return size;
+      }
+      board.doMove(player, move);
+      if(board.winner(player) < 0) {
+        size += proofSize(opponent, plies - 1, best, counted);
+      }
+      board.undoMove(player, move);
+      return size;
+    }
+    int[] moves = new int[GameBoard.MAXIMUM_MOVES];
+    int count = board.generateMoves(player, moves);
+    for(int i=0; i<count; i++) {
+      board.doMove(player, moves[i]);
+      if(board.winner(player) < 0) {
+        if(!best.containsKey(key(opponent, plies - 1))) {
+          walk(opponent, plies - 1, best, new HashMap<Long, Integer>());
+        }
+        size += proofSize(opponent, plies - 1, best, counted);
+      }
+      board.undoMove(player, moves[i]);
+    }
+    return size;
+  }
+
+  /**
+   * Returns whether the table knows that the attacker wins the position with player to
+   * move and plies left.
+   **/
+
+  private boolean known(int player, int plies) {
+    long at = probe(key(player, plies));
+    return at >= 0 && (tablePhi[(int) at] == 0) == (player == attacker) &&
+           (tablePhi[(int) at] == 0 || tableDelta[(int) at] == 0);
+  }
+
+  /**
+   * Returns whether the attacker wins the position with player to move and plies left,
+   * searching it again if the table no longer knows.  Returns false, and marks the
+   * result incomplete, if the node limit runs out before the position is solved.
+   **/
+
+  private boolean proven(int player, int plies) {
+    long key = key(player, plies);
+    long at = probe(key);
+    while((at < 0 || (tablePhi[(int) at] != 0 && tableDelta[(int) at] != 0)) && nodes < maximumNodes) {
+      search(player, plies, INFINITY - 1, INFINITY - 1);
+      at = probe(key);
+    }
+    if(at < 0 || (tablePhi[(int) at] != 0 && tableDelta[(int) at] != 0)) {
+      truncated = true;
+      return false;
+    }
+    return (tablePhi[(int) at] == 0) == (player == attacker);
+  }
+
+  public static void main(String[] args) throws IOException {
+    long maximumNodes = args.length > 0 ? Long.parseLong(args[0]) : 10000000L;
+    BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+    String line;
+    while((line = in.readLine()) != null) {
+      line = line.trim();
+      if(line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      int space = line.indexOf(' ');
+      int plies = Integer.parseInt(space < 0 ? line : line.substring(0, space));
+      String position = space < 0 ? "" : line.substring(space + 1).trim();
+      GameBoard board = GameBoard.fromMoves(position);
+      long start = System.nanoTime();
+      Result result = new Solver(board, plies, maximumNodes, DEFAULT_BITS).solve(GameBoard.sideToMove(position));
+      System.out.println(result + " " + (System.nanoTime() - start) / 1000000 + "ms");
+    }
+  }
+
+}
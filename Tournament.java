@@ -0,0 +1,432 @@
+/* Tournament.java */
+
+package player;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  Plays MachinePlayer against MachinePlayer, many games at once, and reports how
+ *  engine A does against engine B.
+ *
+ *  Each game runs on a thread of its own, a virtual thread when the JVM has them, that
+ *  only referees: it asks each player for a move, checks it on a board of its own and
+ *  tells the other player.  The searches themselves run on a fixed pool with one
+ *  platform thread per core, and a search on T threads waits for T cores to be free,
+ *  so however many games are under way, the cores are never oversubscribed.
+ *
+ *  Every game starts with a few random moves, and each opening is played twice, A
+ *  moving first in one game and B in the other.  Games longer than a limit are draws.
+ *  The runner stops after a number of games, or as soon as a sequential probability
+ *  ratio test (SPRT) decides between two Elo differences.
+ *
+ *    java player.Tournament [options]
+ *      -a SPEC          engine A, as "depth=N" or "time=MS", optionally ",threads=T"
+ *                       (default depth=3)
+ *      -b SPEC          engine B (default depth=2)
+ *      -games N         most games to play (default 1000)
+ *      -concurrency N   most games under way at once (default 2 per core)
+ *      -opening N       random moves at the start of each game (default 4)
+ *      -maxplies N      length at which a game is a draw (default 200)
+ *      -sprt E0 E1      stop once the Elo difference is shown to be E0 or E1
+ *      -seed S          seed of the random openings (default 1)
+ */
+
+public class Tournament {
+
+  static final int WIN = 2;
+  static final int DRAW = 1;
+  static final int LOSS = 0;
+
+  private static final double Z95 = 1.959964;
+  private static final double SPRT_ALPHA = 0.05;
+  private static final double SPRT_BETA = 0.05;
+
+  private final String specA;
+  private final String specB;
+  private final int games;
+  private final int concurrency;
+  private final int openingPlies;
+  private final int maximumPlies;
+  private final long seed;
+  private final boolean sprt;
+  private final double elo0;
+  private final double elo1;
+
+  private final ExecutorService searchPool;
+  private final int cores;
+  private final Semaphore freeCores;
+  private final int[] results = new int[3];
+  private volatile boolean decided;
+
+  Tournament(String specA, String specB, int games, int concurrency, int openingPlies,
+             int maximumPlies, long seed, boolean sprt, double elo0, double elo1) {
+    parse(specA).close();
+    parse(specB).close();
+    this.specA = specA;
+    this.specB = specB;
+    this.games = games;
+    this.concurrency = concurrency;
+    this.openingPlies = openingPlies;
+    this.maximumPlies = maximumPlies;
+    this.seed = seed;
+    this.sprt = sprt;
+    this.elo0 = elo0;
+    this.elo1 = elo1;
+    cores = Runtime.getRuntime().availableProcessors();
+    searchPool = Executors.newFixedThreadPool(cores);
+    freeCores = new Semaphore(cores);
+  }
+
+  /**
+   * Returns a new MachinePlayer of the given color configured by spec, which is
+   * "depth=N" or "time=MS", optionally followed by ",threads=T".  The caller must
+   * close() it.
+   **/
+
+  static MachinePlayer parse(String spec, int color) {
+    MachinePlayer player = null;
+    int threads = 1;
+    for(String part : spec.split(",")) {
+      String[] pair = part.split("=");
+      if(pair.length != 2) {
+        throw new IllegalArgumentException("bad engine spec " + spec);
+      }
+      int value = Integer.parseInt(pair[1].trim());
+      switch(pair[0].trim()) {
+      case "depth":
+        player = new MachinePlayer(color, value);
+        break;
+      case "time":
+        player = new MachinePlayer(color, Duration.ofMillis(value));
+        break;
+      case "threads":
+        threads = value;
+        break;
+      default:
+        throw new IllegalArgumentException("bad engine spec " + spec);
+      }
+    }
+    if(player == null) {
+      throw new IllegalArgumentException("engine spec " + spec + " has no depth or time");
+    }
+    if(threads > 1) {
+      player.setThreads(threads);
+    }
+    return player;
+  }
+
+  static MachinePlayer parse(String spec) {
+    return parse(spec, 1);
+  }
+
+  /**
+   * newGameExecutor returns an executor that runs each task on a new virtual thread,
+   * or, on a JVM without virtual threads, on a platform thread.  The game threads
+   * spend their time waiting for the search pool, so either kind will do.
+   **/
+
+  static ExecutorService newGameExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch(ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool();
+    }
+  }
+
+  /**
+   * run plays the tournament and prints a report now and then and at the end.
+   **/
+
+  void run() throws InterruptedException {
+    ExecutorService gameThreads = newGameExecutor();
+    Semaphore slots = new Semaphore(concurrency);
+    final long start = System.nanoTime();
+    final AtomicInteger finished = new AtomicInteger();
+    List<Future<?>> running = new ArrayList<Future<?>>();
+    for(int g=0; g<games && !decided; g++) {
+      slots.acquire();
+      if(decided) {
+        slots.release();
+        break;
+      }
+      final int game = g;
+      running.add(gameThreads.submit(new Runnable() {
+        public void run() {
+          try {
+            int result = playGame(game);
+            int done;
+            synchronized(results) {
+              results[result]++;
+              done = finished.incrementAndGet();
+              if(sprt && sprtDecision() != 0) {
+                decided = true;
+              }
+            }
+            if(done % 100 == 0) {
+              System.out.println(report(System.nanoTime() - start));
+            }
+          } catch(RuntimeException e) {
+            e.printStackTrace();
+          } finally {
+            slots.release();
+          }
+        }
+      }));
+    }
+    for(Future<?> f : running) {
+      try {
+        f.get();
+      } catch(ExecutionException e) {
+        e.printStackTrace();
+      }
+    }
+    gameThreads.shutdown();
+    searchPool.shutdown();
+    searchPool.awaitTermination(1, TimeUnit.MINUTES);
+    System.out.println(report(System.nanoTime() - start));
+  }
+
+  /**
+   * playGame plays one game and returns WIN, DRAW or LOSS for engine A.  Games come in
+   * pairs: both games of a pair open with the same random moves, and A moves first
+   * (plays white) in the even one.
+   **/
+
+  int playGame(int game) {
+    int colorA = game % 2 == 0 ? 1 : 0;
+    MachinePlayer a = parse(specA, colorA);
+    try {
+      MachinePlayer b = parse(specB, 1 - colorA);
+      try {
+        return playGame(game, colorA, a, b);
+      } finally {
+        b.close();
+      }
+    } finally {
+      a.close();
+    }
+  }
+
+  private int playGame(int game, int colorA, MachinePlayer a, MachinePlayer b) {
+    MachinePlayer[] byColor = new MachinePlayer[2];
+    byColor[colorA] = a;
+    byColor[1 - colorA] = b;
+    GameBoard referee = GameBoard.newBoard();
+    Random random = new Random(seed * 1000003 + game / 2);
+    int player = 1;
+    for(int ply=0; ply<maximumPlies; ply++) {
+      Move m;
+      if(ply < openingPlies) {
+        m = randomMove(referee, player, random);
+        if(!byColor[player].forceMove(m)) {
+          throw new IllegalStateException("player refused opening move " + m);
+        }
+      } else {
+        m = choose(byColor[player]);
+        if(!referee.isValidMove(player, m)) {
+          return player == colorA ? LOSS : WIN;
+        }
+      }
+      referee.doMove(player, m);
+      int opponent = 1 - player;
+      if(!byColor[opponent].opponentMove(m)) {
+        throw new IllegalStateException("player refused opponent move " + m);
+      }
+      int winner = referee.winner(player);
+      if(winner >= 0) {
+        return winner == colorA ? WIN : LOSS;
+      }
+      player = opponent;
+    }
+    return DRAW;
+  }
+
+  /**
+   * choose waits for as many free cores as the player searches with, runs
+   * player.chooseMove() on the search pool and waits for it.
+   **/
+
+  private Move choose(final MachinePlayer player) {
+    int needed = Math.min(player.threads(), cores);
+    try {
+      freeCores.acquire(needed);
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while waiting for a core", e);
+    }
+    try {
+      Future<Move> move = searchPool.submit(new Callable<Move>() {
+        public Move call() {
+          return player.chooseMove();
+        }
+      });
+      return move.get();
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while searching", e);
+    } catch(ExecutionException e) {
+      throw new IllegalStateException("search failed", e.getCause());
+    } finally {
+      freeCores.release(needed);
+    }
+  }
+
+  private static Move randomMove(GameBoard board, int player, Random random) {
+    int[] moves = new int[GameBoard.MAXIMUM_MOVES];
+    int count = board.generateMoves(player, moves);
+    return GameBoard.unpackMove(moves[random.nextInt(count)]);
+  }
+
+  /**
+   * Returns the expected score of a player rated elo points above the other.
+   **/
+
+  static double expectedScore(double elo) {
+    return 1 / (1 + Math.pow(10, -elo / 400));
+  }
+
+  /**
+   * Returns the Elo difference that gives the expected score.
+   **/
+
+  static double elo(double score) {
+    if(score <= 0 || score >= 1) {
+      return score <= 0 ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+    }
+    return -400 * Math.log10(1 / score - 1);
+  }
+
+  /**
+   * Returns the log-likelihood ratio of the results so far for the Elo difference
+   * being elo1 rather than elo0, by the normal approximation to the trinomial
+   * distribution of wins, draws and losses.
+   **/
+
+  static double logLikelihoodRatio(int wins, int draws, int losses, double elo0, double elo1) {
+    int n = wins + draws + losses;
+    if(n == 0 || wins + draws == 0 || losses + draws == 0) {
+      return 0;
+    }
+    double mean = (wins + 0.5 * draws) / n;
+    double variance = (wins + 0.25 * draws) / n - mean * mean;
+    if(variance <= 0) {
+      return 0;
+    }
+    double s0 = expectedScore(elo0);
+    double s1 = expectedScore(elo1);
+    return n * (s1 - s0) * (2 * mean - s0 - s1) / (2 * variance);
+  }
+
+  /**
+   * Returns 1 if the SPRT accepts elo1, -1 if it accepts elo0, and 0 if it needs more
+   * games.  Must be called holding the lock on results.
+   **/
+
+  private int sprtDecision() {
+    double llr = logLikelihoodRatio(results[WIN], results[DRAW], results[LOSS], elo0, elo1);
+    if(llr >= Math.log((1 - SPRT_BETA) / SPRT_ALPHA)) {
+      return 1;
+    }
+    if(llr <= Math.log(SPRT_BETA / (1 - SPRT_ALPHA))) {
+      return -1;
+    }
+    return 0;
+  }
+
+  /**
+   * report returns a line on the results so far: the games played and how fast, A's
+   * wins, draws and losses, its score and Elo difference with 95% confidence
+   * intervals, and the state of the SPRT.
+   **/
+
+  String report(long elapsedNanos) {
+    int wins, draws, losses;
+    String test = "";
+    synchronized(results) {
+      wins = results[WIN];
+      draws = results[DRAW];
+      losses = results[LOSS];
+      if(sprt) {
+        int decision = sprtDecision();
+        test = String.format(" SPRT(%.1f, %.1f) LLR %.2f [%.2f, %.2f]%s", elo0, elo1,
+            logLikelihoodRatio(wins, draws, losses, elo0, elo1),
+            Math.log(SPRT_BETA / (1 - SPRT_ALPHA)), Math.log((1 - SPRT_BETA) / SPRT_ALPHA),
+            decision > 0 ? " H1 accepted" : decision < 0 ? " H0 accepted" : "");
+      }
+    }
+    int n = wins + draws + losses;
+    if(n == 0) {
+      return "no games";
+    }
+    double mean = (wins + 0.5 * draws) / n;
+    double deviation = Math.sqrt(Math.max(0, (wins + 0.25 * draws) / n - mean * mean) / n);
+    double low = Math.max(0, mean - Z95 * deviation);
+    double high = Math.min(1, mean + Z95 * deviation);
+    double seconds = elapsedNanos / 1e9;
+    return String.format("%d games %.2f games/s  A: +%d =%d -%d  win %.1f%%  score %.1f%% [%.1f%%, %.1f%%]"
+        + "  Elo %.0f [%.0f, %.0f]%s", n, n / seconds, wins, draws, losses, 100.0 * wins / n,
+        100 * mean, 100 * low, 100 * high, elo(mean), elo(low), elo(high), test);
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    String a = "depth=3";
+    String b = "depth=2";
+    int games = 1000;
+    int concurrency = 2 * Runtime.getRuntime().availableProcessors();
+    int opening = 4;
+    int maximumPlies = 200;
+    long seed = 1;
+    boolean sprt = false;
+    double elo0 = 0;
+    double elo1 = 0;
+    for(int i=0; i<args.length; i++) {
+      switch(args[i]) {
+      case "-a":
+        a = args[++i];
+        break;
+      case "-b":
+        b = args[++i];
+        break;
+      case "-games":
+        games = Integer.parseInt(args[++i]);
+        break;
+      case "-concurrency":
+        concurrency = Integer.parseInt(args[++i]);
+        break;
+      case "-opening":
+        opening = Integer.parseInt(args[++i]);
+        break;
+      case "-maxplies":
+        maximumPlies = Integer.parseInt(args[++i]);
+        break;
+      case "-seed":
+        seed = Long.parseLong(args[++i]);
+        break;
+      case "-sprt":
+        sprt = true;
+        elo0 = Double.parseDouble(args[++i]);
+        elo1 = Double.parseDouble(args[++i]);
+        break;
+      default:
+        System.err.println("unknown option " + args[i]);
+        System.exit(2);
+      }
+    }
+    System.out.println("A " + a + " vs B " + b);
+    new Tournament(a, b, games, concurrency, opening, maximumPlies, seed, sprt, elo0, elo1).run();
+  }
+
+}
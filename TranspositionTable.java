@@ -0,0 +1,156 @@
+/* TranspositionTable.java */
+
+package player;
+
+/**
+ *  A fixed-size hash table of search results, indexed by the Zobrist key of a
+ *  position (GameBoard.hash(player)).  Each slot holds the full key and one packed
+ *  long of data:
+ *
+ *    bits  0-15   best move, packed by GameBoard.packMove()
+ *    bits 16-31   score, signed
+ *    bits 32-39   search depth
+ *    bits 40-41   bound type (EXACT, LOWER or UPPER)
+ *    bit  42      set in every stored entry, so that an empty slot reads as 0
+ *    bits 43-47   number of chips on the board
+ *    bits 48-55   generation, the search that stored it
+ *
+ *  The table lives as long as its player, so what one move's search stored serves the
+ *  moves after it.  Slots come in pairs, and a position may be stored in either slot of
+ *  its pair.  An entry of the same position is overwritten unless it is deeper and from
+ *  the current search.  Otherwise the slot given up is the one worth less: an entry with
+ *  fewer chips than the position searched, which can never be reached again since chips
+ *  never leave the board, is worth nothing, and an entry loses AGE_WEIGHT plies of depth
+ *  for every search since it was stored.  So old entries make way for new ones and the
+ *  table never holds more than its fixed size.
+ *
+ *  Several threads may share one table without locks.  A slot stores key ^ data in
+ *  place of the key, so a slot torn by two threads writing it at once (the key of one
+ *  and the data of the other) no longer matches either key, and reads as a miss.
+ */
+class TranspositionTable {
+
+    static final int EXACT = 0;
+    static final int LOWER = 1;
+    static final int UPPER = 2;
+
+    static final int DEFAULT_BITS = 18;
+
+    private static final long STORED = 1L << 42;
+    private static final int AGE_WEIGHT = 4;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+    private int generation;
+    private int rootChips;
+
+    /**
+     *  Creates a table of 2^bits slots.
+     */
+    TranspositionTable(int bits) {
+        keys = new long[1 << bits];
+        data = new long[1 << bits];
+        mask = (1 << bits) - 1;
+    }
+
+    TranspositionTable() {
+        this(DEFAULT_BITS);
+    }
+
+    /**
+     *  newSearch starts a new generation, for a search of a position with the given
+     *  number of chips on the board.  It must be called before the search starts, on
+     *  the thread that starts the searchers.  With 0 chips every entry stays reachable,
+     *  as it must for a table that several games share.
+     */
+    void newSearch(int chips) {
+        generation = (generation + 1) & 0xFF;
+        rootChips = chips;
+    }
+
+    /**
+     *  Returns the data stored for the key, or 0 if the table holds nothing for it.
+     */
+    long probe(long key) {
+        int slot = (int) key & mask & ~1;
+        long entry = data[slot];
+        if ((keys[slot] ^ entry) == key) {
+            return entry;
+        }
+        entry = data[slot + 1];
+        if ((keys[slot + 1] ^ entry) == key) {
+            return entry;
+        }
+        return 0;
+    }
+
+    /**
+     *  Stores a search result for the key, a position with the given number of chips
+     *  on the board.
+     */
+    void store(long key, int depth, int score, int bound, int move, int chips) {
+        int slot = (int) key & mask & ~1;
+        long old = data[slot];
+        if ((keys[slot] ^ old) != key) {
+            long other = data[slot + 1];
+            if ((keys[slot + 1] ^ other) == key || worth(other) < worth(old)) {
+                slot++;
+                old = other;
+            }
+        }
+        if ((keys[slot] ^ old) == key && depth(old) > depth && generation(old) == generation) {
+            return;
+        }
+        long entry = STORED | ((long) generation << 48) | ((long) chips << 43)
+                | ((long) bound << 40) | ((long) (depth & 0xFF) << 32)
+                | ((long) (score & 0xFFFF) << 16) | (move & 0xFFFF);
+        keys[slot] = key ^ entry;
+        data[slot] = entry;
+    }
+
+    /**
+     *  worth returns how much an entry is worth keeping: its depth less AGE_WEIGHT for
+     *  every search since it was stored, or Integer.MIN_VALUE if the slot is empty or
+     *  its position can no longer be reached.
+     */
+    private int worth(long entry) {
+        if (entry == 0 || chips(entry) < rootChips) {
+            return Integer.MIN_VALUE;
+        }
+        return depth(entry) - AGE_WEIGHT * ((generation - generation(entry)) & 0xFF);
+    }
+
+    /**
+     *  Empties the table.
+     */
+    void clear() {
+        java.util.Arrays.fill(keys, 0);
+        java.util.Arrays.fill(data, 0);
+    }
+
+    static int move(long entry) {
+        return (int) entry & 0xFFFF;
+    }
+
+    static int score(long entry) {
+        return (short) (entry >>> 16);
+    }
+
+    static int depth(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    static int bound(long entry) {
+        return (int) (entry >>> 40) & 3;
+    }
+
+    static int chips(long entry) {
+        return (int) (entry >>> 43) & 0x1F;
+    }
+
+    static int generation(long entry) {
+        return (int) (entry >>> 48) & 0xFF;
+    }
+
+}
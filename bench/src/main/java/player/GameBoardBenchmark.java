@@ -0,0 +1,121 @@
+/* GameBoardBenchmark.java */
+
+package player;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import player.list.*;
+
+/**
+ *  Benchmarks of the GameBoard methods the search spends its time in, on each position
+ *  of the corpus.  Run with "-prof gc" to see the allocation rate next to ops/s.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBoardBenchmark {
+
+  @Param({"opening", "middlegame", "step"})
+  public String position;
+
+  private static final int DIMENSION = 8;
+
+  private GameBoard board;
+  private int player;
+  private int[] moves;
+  private int moveCount;
+  private Move[] candidates;
+  private Chip[] chips;
+
+  @Setup
+  public void setUp() {
+    board = Positions.board(position);
+    player = Positions.sideToMove(position);
+    moves = new int[GameBoard.MAXIMUM_MOVES];
+    moveCount = board.generateMoves(player, moves);
+
+    // Every move of the right kind to every square, legal or not, as a client would try them.
+    ArrayList<Move> tried = new ArrayList<Move>();
+    ArrayList<Chip> mine = new ArrayList<Chip>();
+    for(int x=0; x<DIMENSION; x++) {
+      for(int y=0; y<DIMENSION; y++) {
+        if(board.colorAt(x, y) == player) {
+          mine.add(board.getChip(x, y));
+        }
+      }
+    }
+    for(int x=0; x<DIMENSION; x++) {
+      for(int y=0; y<DIMENSION; y++) {
+        if(board.getChipList(player).getChipsLeft() > 0) {
+          tried.add(new Move(x, y));
+        } else {
+          for(Chip c : mine) {
+            tried.add(new Move(x, y, c.x(), c.y()));
+          }
+        }
+      }
+    }
+    candidates = tried.toArray(new Move[0]);
+    chips = mine.toArray(new Chip[0]);
+  }
+
+  @Benchmark
+  public MoveList validMoves() {
+    return board.validMoves(player);
+  }
+
+  @Benchmark
+  public int isValidMove() {
+    int valid = 0;
+    for(int i=0; i<candidates.length; i++) {
+      if(board.isValidMove(player, candidates[i])) {
+        valid++;
+      }
+    }
+    return valid;
+  }
+
+  @Benchmark
+  public void hasNetwork(Blackhole bh) {
+    bh.consume(board.hasNetwork(0));
+    bh.consume(board.hasNetwork(1));
+  }
+
+  @Benchmark
+  public void findConnections(Blackhole bh) {
+    for(int i=0; i<chips.length; i++) {
+      bh.consume(board.findConnections(chips[i]));
+    }
+  }
+
+  @Benchmark
+  public void missingChips(Blackhole bh) {
+    bh.consume(board.missingChips(0));
+    bh.consume(board.missingChips(1));
+  }
+
+  /**
+   * Scores every move of the side to move, as the last ply of a search does.
+   **/
+
+  @Benchmark
+  public int evaluate() {
+    int sum = 0;
+    for(int i=0; i<moveCount; i++) {
+      sum += board.evaluate(player, moves[i]);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public GameBoard copy() {
+    return board.copy();
+  }
+
+}
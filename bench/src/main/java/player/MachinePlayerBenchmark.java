@@ -0,0 +1,59 @@
+/* MachinePlayerBenchmark.java */
+
+package player;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ *  Benchmarks MachinePlayer.chooseMove() on each position of the corpus.  The player,
+ *  its Searcher and the transposition table are made once for the whole run, so that
+ *  allocating them does not count against the search.  Before each call the table is
+ *  emptied, and after it the move chooseMove() played is taken back.  The Searcher is
+ *  marked shared, so that start() forgets the last call's killers and history, and
+ *  every call searches the position as a fresh Searcher would.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MachinePlayerBenchmark {
+
+  @Param({"opening", "middlegame", "step"})
+  public String position;
+
+  @Param({"2", "3"})
+  public int depth;
+
+  private TranspositionTable table;
+  private MachinePlayer player;
+  private Move played;
+
+  @Setup(Level.Trial)
+  public void allocate() {
+    table = new TranspositionTable();
+    Searcher searcher = new Searcher(null, table);
+    searcher.setShared(true);
+    player = Positions.player(position, depth, searcher);
+  }
+
+  @Setup(Level.Invocation)
+  public void setUp() {
+    table.clear();
+  }
+
+  @Benchmark
+  public Move chooseMove() {
+    played = player.chooseMove();
+    return played;
+  }
+
+  @TearDown(Level.Invocation)
+  public void takeBack() {
+    player.undoMove(played);
+  }
+
+}
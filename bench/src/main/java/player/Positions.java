@@ -0,0 +1,75 @@
+/* Positions.java */
+
+package player;
+
+/**
+ *  The fixed corpus of positions the benchmarks run on.  Each position is the start
+ *  of one depth-2 self-play game, written as the moves that lead to it, as
+ *  GameBoard.fromMoves() reads them.
+ */
+
+final class Positions {
+
+  static final String OPENING = "01 10 02 11";
+
+  static final String MIDDLEGAME = "01 10 02 11 04 13 05 14 21 33 22 16 24 17";
+
+  static final String STEP = "01 10 02 11 04 13 05 14 21 33 22 16 24 17 26 35 34 43 36 45 "
+      + "01:42 10:64 04:06 11:41";
+
+  private Positions() {
+  }
+
+  /**
+   * Returns the moves of the named position: "opening", "middlegame" or "step".
+   **/
+
+  static String moves(String name) {
+    switch(name) {
+    case "opening":
+      return OPENING;
+    case "middlegame":
+      return MIDDLEGAME;
+    case "step":
+      return STEP;
+    default:
+      throw new IllegalArgumentException("unknown position " + name);
+    }
+  }
+
+  /**
+   * Returns the color of the player to move in the named position.
+   **/
+
+  static int sideToMove(String name) {
+    return GameBoard.sideToMove(moves(name));
+  }
+
+  /**
+   * Returns a GameBoard, with a full ChipList for each player, set up at the named position.
+   **/
+
+  static GameBoard board(String name) {
+    return GameBoard.fromMoves(moves(name));
+  }
+
+  /**
+   * Returns a MachinePlayer of the side to move, searching depth plies with the given
+   * Searcher, that has seen every move of the named position.
+   **/
+
+  static MachinePlayer player(String name, int depth, Searcher searcher) {
+    int color = sideToMove(name);
+    MachinePlayer player = new MachinePlayer(color, depth, searcher);
+    String[] moves = moves(name).split(" ");
+    for(int i=0; i<moves.length; i++) {
+      Move m = GameBoard.parseMove(moves[i]);
+      boolean legal = GameBoard.sideToMove(i) == color ? player.forceMove(m) : player.opponentMove(m);
+      if(!legal) {
+        throw new IllegalStateException("illegal move " + moves[i] + " in " + name);
+      }
+    }
+    return player;
+  }
+
+}
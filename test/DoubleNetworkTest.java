@@ -0,0 +1,59 @@
+/* DoubleNetworkTest.java */
+
+package player;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *  Black to move has one step that completes its network, and it completes white's
+ *  too, so it loses.  winner(), evaluate(), the Searcher and the Solver must agree.
+ */
+
+class DoubleNetworkTest {
+
+  private static final String POSITION = "76 24 75 65 42 60 26 51 22 17 43 12 03 27 61 63 36 44 55 57 "
+      + "26:01 57:45 03:14 51:40 55:21 27:32 01:15 24:57 43:56 63:47 42:43 12:11 22:41 47:67 "
+      + "15:71 67:30 71:06 45:15 36:02 17:53 56:22 40:26 61:45 11:50 75:56";
+  private static final String DOUBLE = "65:66";
+
+  @Test
+  void completingBothNetworksLoses() {
+    GameBoard board = GameBoard.fromMoves(POSITION);
+    int player = GameBoard.sideToMove(POSITION);
+    Move move = GameBoard.parseMove(DOUBLE);
+    board.doMove(player, move);
+    assertTrue(board.hasNetwork(player));
+    assertTrue(board.hasNetwork(1 - player));
+    assertEquals(1 - player, board.winner(player));
+    board.undoMove(player, move);
+    assertEquals(-GameBoard.MAXIMUM_SCORE, board.evaluate(player, move));
+  }
+
+  @Test
+  void searcherDoesNotPlayDoubleNetwork() {
+    GameBoard board = GameBoard.fromMoves(POSITION);
+    int player = GameBoard.sideToMove(POSITION);
+    int move = GameBoard.packMove(GameBoard.parseMove(DOUBLE));
+    for(int depth=1; depth<=3; depth++) {
+      Searcher searcher = new Searcher(board, new TranspositionTable());
+      searcher.start(board, Long.MAX_VALUE);
+      int score = searcher.scoreRootMove(player, move, depth, -GameBoard.MAXIMUM_SCORE - 1);
+      assertEquals(-GameBoard.MAXIMUM_SCORE, score, "depth " + depth);
+      assertNotEquals(move, searcher.searchRoot(player, depth), "depth " + depth);
+      assertTrue(searcher.rootScore() < GameBoard.MAXIMUM_SCORE, "depth " + depth);
+    }
+  }
+
+  @Test
+  void solverFindsNoWin() {
+    GameBoard board = GameBoard.fromMoves(POSITION);
+    Solver.Result result = new Solver(board, 1, 1000000, Solver.DEFAULT_BITS).solve(GameBoard.sideToMove(POSITION));
+    assertEquals(Solver.UNKNOWN, result.getOutcome());
+    assertTrue(result.isComplete());
+  }
+
+}
@@ -0,0 +1,90 @@
+/* GameServerTest.java */
+
+package player;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ *  Runs a GameServer on a free port and plays it, with LoadClient and by hand.
+ */
+
+@Timeout(60)
+class GameServerTest {
+
+  private GameServer server;
+  private Thread serving;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = new GameServer(0, 2, 4, 12);
+    serving = new Thread(() -> {
+      try {
+        server.run();
+      } catch(IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    serving.start();
+  }
+
+  @AfterEach
+  void stopServer() throws InterruptedException {
+    server.close();
+    serving.join(10000);
+    assertFalse(serving.isAlive());
+  }
+
+  @Test
+  void playsLoadClientGames() throws IOException {
+    LoadClient client = new LoadClient(new InetSocketAddress("localhost", server.port()), 20, 2, 2, 30);
+    client.run();
+    assertEquals(40, client.games());
+    assertEquals(0, client.errors());
+    assertTrue(client.moves() > 0);
+  }
+
+  @Test
+  void answersRequests() throws IOException {
+    try(Socket socket = new Socket("localhost", server.port())) {
+      socket.setSoTimeout(10000);
+      OutputStream out = socket.getOutputStream();
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      // No game yet: the answer is the status byte alone.
+      out.write(new byte[] { GameServer.CHOOSE_MOVE });
+      assertEquals(GameServer.ERROR, in.readByte());
+      out.write(new byte[] { GameServer.NEW_GAME, 1, (byte) (Searcher.MAXIMUM_DEPTH + 1) });
+      assertEquals(GameServer.ERROR, in.readByte());
+      out.write(new byte[] { GameServer.NEW_GAME, 1, 2 });
+      assertEquals(GameServer.OK, in.readByte());
+      // Black may not add a chip to white's goal, column 0.
+      int illegal = GameBoard.packMove(new Move(0, 3));
+      out.write(new byte[] { GameServer.OPPONENT_MOVE, (byte) (illegal >>> 8), (byte) illegal });
+      assertEquals(GameServer.ILLEGAL, in.readByte());
+      out.write(new byte[] { GameServer.CHOOSE_MOVE });
+      assertEquals(GameServer.OK, in.readByte());
+      int move = in.readShort() & 0xFFFF;
+      GameBoard board = GameBoard.newBoard();
+      assertTrue(move != Searcher.NO_MOVE && board.isValidMove(1, move));
+      board.doMove(1, move);
+      int[] moves = new int[GameBoard.MAXIMUM_MOVES];
+      assertTrue(board.generateMoves(0, moves) > 0);
+      int reply = moves[0];
+      out.write(new byte[] { GameServer.OPPONENT_MOVE, (byte) (reply >>> 8), (byte) reply });
+      assertEquals(GameServer.OK, in.readByte());
+    }
+  }
+
+}
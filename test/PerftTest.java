@@ -0,0 +1,44 @@
+/* PerftTest.java */
+
+package player;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *  Checks GameBoard.perft() against Perft's reference counts.  Full, move-by-move
+ *  counts stop at depth 3, where they take a fraction of a second.
+ */
+
+class PerftTest {
+
+  private static final int FULL_DEPTH = 3;
+  private static final int BULK_DEPTH = 4;
+
+  @Test
+  void countsMatchReference() {
+    for(int i=0; i<Perft.POSITIONS.length; i++) {
+      GameBoard board = GameBoard.fromMoves(Perft.POSITIONS[i]);
+      int player = GameBoard.sideToMove(Perft.POSITIONS[i]);
+      for(int depth=1; depth<=Math.min(BULK_DEPTH, Perft.COUNTS[i].length); depth++) {
+        String name = Perft.NAMES[i] + " depth " + depth;
+        assertEquals(Perft.COUNTS[i][depth-1], board.perft(player, depth, true), name + " bulk");
+        if(depth <= FULL_DEPTH) {
+          assertEquals(Perft.COUNTS[i][depth-1], board.perft(player, depth, false), name + " full");
+        }
+      }
+    }
+  }
+
+  @Test
+  void perftLeavesBoardUnchanged() {
+    GameBoard board = GameBoard.fromMoves(Perft.POSITIONS[3]);
+    String before = board.toString();
+    long hash = board.hash();
+    board.perft(GameBoard.sideToMove(Perft.POSITIONS[3]), 2, false);
+    assertEquals(before, board.toString());
+    assertEquals(hash, board.hash());
+  }
+
+}
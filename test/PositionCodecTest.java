@@ -0,0 +1,81 @@
+/* PositionCodecTest.java */
+
+package player;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ *  Round-trips every position of random games through PositionCodec.
+ */
+
+class PositionCodecTest {
+
+  @Test
+  void roundTripsRandomGames() {
+    int[] moves = new int[GameBoard.MAXIMUM_MOVES];
+    ByteBuffer buffer = ByteBuffer.allocate(PositionCodec.BYTES);
+    for(int game=0; game<50; game++) {
+      Random random = new Random(game);
+      GameBoard board = GameBoard.newBoard();
+      int player = 1;
+      for(int ply=0; ply<60 && board.winner(1 - player) < 0; ply++) {
+        PositionCodec.encode(board, player, buffer, 0);
+        GameBoard decoded = PositionCodec.decode(buffer, 0);
+        assertEquals(board.toString(), decoded.toString());
+        assertEquals(board.hash(player), decoded.hash(player));
+        assertEquals(player, PositionCodec.sideToMove(buffer, 0));
+        for(int p=0; p<2; p++) {
+          assertEquals(board.getChipList(p).getChipsLeft(), PositionCodec.chipsLeft(buffer, 0, p));
+          assertEquals(board.getChipList(p).getChipsLeft(), decoded.getChipList(p).getChipsLeft());
+        }
+        assertEquals(board.generateMoves(player, moves), decoded.generateMoves(player, new int[GameBoard.MAXIMUM_MOVES]));
+        ByteBuffer again = ByteBuffer.allocate(PositionCodec.BYTES);
+        PositionCodec.encode(decoded, player, again, 0);
+        assertEquals(buffer, again);
+        int count = board.generateMoves(player, moves);
+        if(count == 0) {
+          break;
+        }
+        board.doMove(player, moves[random.nextInt(count)]);
+        player = 1 - player;
+      }
+    }
+  }
+
+  @Test
+  void relativeEncodeAndDecodeMovePosition() {
+    GameBoard board = GameBoard.fromMoves(Perft.POSITIONS[3]);
+    ByteBuffer buffer = ByteBuffer.allocate(2 * PositionCodec.BYTES);
+    PositionCodec.encode(board, 0, buffer);
+    PositionCodec.encode(board, 1, buffer);
+    assertEquals(2 * PositionCodec.BYTES, buffer.position());
+    buffer.flip();
+    assertEquals(board.toString(), PositionCodec.decode(buffer).toString());
+    assertEquals(PositionCodec.BYTES, buffer.position());
+    assertEquals(1, PositionCodec.sideToMove(buffer, buffer.position()));
+  }
+
+  @Test
+  void rejectsInvalidPositions() {
+    ByteBuffer buffer = ByteBuffer.allocate(PositionCodec.BYTES);
+    // A black chip on square 8, (0, 1): column 0 is white's goal.
+    buffer.putLong(0, 8);
+    assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(buffer, 0));
+    // Two black chips on square 9.
+    buffer.putLong(0, 9 | 9 << 6);
+    assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(buffer, 0));
+    // A black chip on the board after one not yet played.
+    buffer.putLong(0, 9 << 6);
+    assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(buffer, 0));
+    // Bits above the chips.
+    buffer.putLong(0, 0);
+    buffer.putLong(8, 1L << 63);
+    assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(buffer, 0));
+  }
+
+}
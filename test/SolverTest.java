@@ -0,0 +1,60 @@
+/* SolverTest.java */
+
+package player;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ *  Solves the README's problem: white to move wins in 5 plies.
+ */
+
+class SolverTest {
+
+  private static final String PUZZLE = "01 10 02 11 04 13 05 14 21 16 22 17 52 32";
+  private static final String LINE = "[[add to 51], [add to 31], [add to 24], [add to 34], [add to 72]]";
+
+  private static Solver.Result solve(long maximumNodes, int tableBits) {
+    GameBoard board = GameBoard.fromMoves(PUZZLE);
+    return new Solver(board, 5, maximumNodes, tableBits).solve(GameBoard.sideToMove(PUZZLE));
+  }
+
+  @Test
+  void solvesReadmePuzzle() {
+    Solver.Result result = solve(1000000, Solver.DEFAULT_BITS);
+    assertEquals(Solver.WIN, result.getOutcome());
+    assertEquals(LINE, Arrays.toString(result.getLine()));
+    assertEquals(76, result.getProofSize());
+    assertTrue(result.isComplete());
+  }
+
+  @Test
+  void solvesReadmePuzzleWithSmallTable() {
+    for(int bits=4; bits<=11; bits++) {
+      Solver.Result result = solve(1000000, bits);
+      assertEquals(Solver.WIN, result.getOutcome(), "2^" + bits + " slots");
+      assertEquals(LINE, Arrays.toString(result.getLine()), "2^" + bits + " slots");
+      assertTrue(result.isComplete(), "2^" + bits + " slots");
+    }
+  }
+
+  @Test
+  void givesUpAtNodeLimit() {
+    Solver.Result result = solve(100, Solver.DEFAULT_BITS);
+    assertEquals(Solver.UNKNOWN, result.getOutcome());
+    assertEquals(0, result.getLine().length);
+    assertEquals(100, result.getNodes());
+  }
+
+  @Test
+  void solveLeavesBoardUnchanged() {
+    GameBoard board = GameBoard.fromMoves(PUZZLE);
+    String before = board.toString();
+    new Solver(board, 5, 1000000, Solver.DEFAULT_BITS).solve(GameBoard.sideToMove(PUZZLE));
+    assertEquals(before, board.toString());
+  }
+
+}